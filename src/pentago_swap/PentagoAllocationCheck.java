@@ -0,0 +1,81 @@
+package pentago_swap;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Checks that the hot paths of PentagoBoardState stay allocation-free, by measuring
+ * the bytes allocated per call with ThreadMXBean.getThreadAllocatedBytes. Exits with
+ * status 1 if any method goes over its budget.
+ *
+ * From the root directory of the project, run
+ *
+ *     java -cp bin pentago_swap.PentagoAllocationCheck
+ */
+public class PentagoAllocationCheck {
+    private static final int CALLS = 200000;
+    private static final int WARMUP_ROUNDS = 5;
+    // clone() allocates the new state itself and nothing else
+    private static final double CLONE_BUDGET = 64;
+
+    private interface Call {
+        void run(PentagoBoardState pbs, PentagoMove move);
+    }
+
+    private static long sink;
+    private static Object lastClone;
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!mx.isThreadAllocatedMemorySupported()) {
+            System.out.println("Thread allocation accounting is not supported by this JVM.");
+            return;
+        }
+        mx.setThreadAllocatedMemoryEnabled(true);
+
+        // A mid-game position, so moves do not end the game
+        PentagoBoardState pbs = new PentagoBoardState();
+        Random random = new Random(2019);
+        for (int i = 0; i < 10; i++) {
+            ArrayList<PentagoMove> moves = pbs.getAllLegalMoves();
+            pbs.processMove(moves.get(random.nextInt(moves.size())));
+        }
+        PentagoMove move = pbs.getAllLegalMoves().get(0);
+
+        boolean ok = true;
+        ok &= check(mx, "clone", pbs, move, CLONE_BUDGET, (s, m) -> lastClone = s.clone());
+        ok &= check(mx, "processMove", pbs, move, 0, (s, m) -> s.processMove(m));
+        ok &= check(mx, "doMove+undoMove", pbs, move, 0, (s, m) -> s.undoMove(s.doMove(m)));
+        ok &= check(mx, "isLegal", pbs, move, 0, (s, m) -> sink += s.isLegal(m) ? 1 : 0);
+        ok &= check(mx, "getRandomMove", pbs, move, 0, (s, m) -> sink += s.getRandomMove().getPlayerID());
+        ok &= check(mx, "getMoveCoord", pbs, move, 0, (s, m) -> sink += m.getMoveCoord().getX());
+        ok &= check(mx, "getWinner", pbs, move, 0, (s, m) -> sink += s.getWinner());
+
+        System.out.println(ok ? "All allocation budgets met." : "Allocation budget exceeded.");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static boolean check(com.sun.management.ThreadMXBean mx, String name, PentagoBoardState pbs,
+            PentagoMove move, double budget, Call call) {
+        long threadId = Thread.currentThread().getId();
+        double perCall = 0;
+        // Every call gets its own copy of the position, prepared outside the measurement
+        PentagoBoardState[] states = new PentagoBoardState[CALLS];
+        // Later rounds run JIT-compiled code, which is what matters for a search
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (int i = 0; i < CALLS; i++) {
+                states[i] = (PentagoBoardState) pbs.clone();
+            }
+            long before = mx.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < CALLS; i++) {
+                call.run(states[i], move);
+            }
+            perCall = (double) (mx.getThreadAllocatedBytes(threadId) - before) / CALLS;
+        }
+        boolean ok = perCall <= budget + 0.5;
+        System.out.println(String.format("%-22s %8.2f bytes/call (budget %.0f) %s", name, perCall, budget,
+                ok ? "OK" : "FAIL"));
+        return ok;
+    }
+}
@@ -209,7 +209,7 @@ public class PentagoBoardPanel extends BoardPanel implements MouseListener, Mous
         if (pbs.isPlaceLegal(dest)) {
             isPieceSelected = true;
             pieceSelection = new PentagoCoord(dest.getX(), dest.getY());
-            pbs.getBoard()[dest.getX()][dest.getY()] = pbs.getTurnPlayer() == PentagoBoardState.WHITE ? Piece.WHITE : Piece.BLACK;
+            pbs.setPieceAt(dest.getX(), dest.getY(), pbs.getTurnPlayer() == PentagoBoardState.WHITE ? Piece.WHITE : Piece.BLACK);
             humanRepaint();
             System.out.println("PIECE PLACED");
         }
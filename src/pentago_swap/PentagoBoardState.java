@@ -5,8 +5,7 @@ import boardgame.BoardState;
 import boardgame.Move;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.function.UnaryOperator;
+import java.util.Arrays;
 import java.util.Random;
 
 import java.util.Scanner;
@@ -19,7 +18,7 @@ import java.util.Scanner;
 public class PentagoBoardState extends BoardState {
     public static final int BOARD_SIZE = 6;
     private static final int QUAD_SIZE = 3;
-    private static final int NUM_QUADS = 4;
+    static final int NUM_QUADS = 4;
     public static final int WHITE = 0;
     public static final int BLACK = 1;
     public static final int MAX_TURNS = 18;
@@ -38,51 +37,145 @@ public class PentagoBoardState extends BoardState {
         public String toString() { return name(); }
     }
 
-    private static final UnaryOperator<PentagoCoord> getNextHorizontal = c -> new PentagoCoord(c.getX(), c.getY()+1);
-    private static final UnaryOperator<PentagoCoord> getNextVertical = c -> new PentagoCoord(c.getX()+1, c.getY());
-    private static final UnaryOperator<PentagoCoord> getNextDiagRight = c -> new PentagoCoord(c.getX()+1, c.getY()+1);
-    private static final UnaryOperator<PentagoCoord> getNextDiagLeft = c -> new PentagoCoord(c.getX()+1, c.getY()-1);
     private static int FIRST_PLAYER = WHITE;
-    private static HashMap<Quadrant, Integer> quadToInt;
-    private static HashMap<Integer, Quadrant> intToQuad;
+    // Bitboard layout: quadrant-major, so every quadrant occupies 9 contiguous bits
+    // (bit = quad * 9 + row * 3 + col, rows and cols relative to the quadrant).
+    static final int QUAD_CELLS = QUAD_SIZE * QUAD_SIZE;
+    static final long QUAD_MASK = (1L << QUAD_CELLS) - 1;
+    private static final long[] CELL_BIT = new long[BOARD_SIZE * BOARD_SIZE];
+    private static final int[] BIT_CELL = new int[NUM_QUADS * QUAD_CELLS];
+    private static final long BOARD_MASK = (1L << (NUM_QUADS * QUAD_CELLS)) - 1;
     static {
-        quadToInt = new HashMap<>(4);
-        quadToInt.put(Quadrant.TL, 0);
-        quadToInt.put(Quadrant.TR, 1);
-        quadToInt.put(Quadrant.BL, 2);
-        quadToInt.put(Quadrant.BR, 3);
-        intToQuad = new HashMap<>(4);
-        intToQuad.put(0, Quadrant.TL);
-        intToQuad.put(1, Quadrant.TR);
-        intToQuad.put(2, Quadrant.BL);
-        intToQuad.put(3, Quadrant.BR);
-    }
-
-    private Piece[][] board;
-    private Piece[][][] quadrants;
-    private int turnPlayer;
-    private int turnNumber;
-    private int winner;
-    private Random rand;
+        for (int x = 0; x < BOARD_SIZE; x++) {
+            for (int y = 0; y < BOARD_SIZE; y++) {
+                int quad = (x / QUAD_SIZE) * 2 + (y / QUAD_SIZE);
+                int bit = quad * QUAD_CELLS + (x % QUAD_SIZE) * QUAD_SIZE + (y % QUAD_SIZE);
+                CELL_BIT[x * BOARD_SIZE + y] = 1L << bit;
+                BIT_CELL[bit] = x * BOARD_SIZE + y;
+            }
+        }
+    }
 
-    PentagoBoardState() {
-        super();
-        this.board = new Piece[BOARD_SIZE][BOARD_SIZE];
+    // The 32 five-in-a-row lines of the 6x6 board as bitboard masks
+    private static final int WIN_LENGTH = 5;
+    static final long[] WIN_LINES = new long[32];
+    static {
+        int n = 0;
         for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                this.board[i][j] = Piece.EMPTY;
+            for (int start = 0; start + WIN_LENGTH <= BOARD_SIZE; start++) {
+                WIN_LINES[n++] = lineMask(i, start, 0, 1); // Horizontal
+                WIN_LINES[n++] = lineMask(start, i, 1, 0); // Vertical
             }
         }
-        this.quadrants = new Piece[NUM_QUADS][QUAD_SIZE][QUAD_SIZE];
-        for (int i = 0; i < NUM_QUADS; i++) {
-            for (int j = 0; j < QUAD_SIZE; j++) {
-                for (int k = 0; k < QUAD_SIZE; k++) {
-                    this.quadrants[i][j][k] = Piece.EMPTY;
+        for (int x = 0; x + WIN_LENGTH <= BOARD_SIZE; x++) {
+            for (int y = 0; y + WIN_LENGTH <= BOARD_SIZE; y++) {
+                WIN_LINES[n++] = lineMask(x, y, 1, 1); // Diagonal right
+                WIN_LINES[n++] = lineMask(x, BOARD_SIZE - 1 - y, 1, -1); // Diagonal left
+            }
+        }
+    }
+
+    private static long lineMask(int x, int y, int dx, int dy) {
+        long mask = 0L;
+        for (int k = 0; k < WIN_LENGTH; k++) {
+            mask |= CELL_BIT[(x + k * dx) * BOARD_SIZE + (y + k * dy)];
+        }
+        return mask;
+    }
+
+    // Base-3 value of a 9-bit quadrant mask; a quadrant's contents are identified by
+    // TERNARY[white] + 2 * TERNARY[black], which is below 3^9.
+    private static final int[] TERNARY = new int[1 << QUAD_CELLS];
+    private static final int QUAD_ID_BITS = 15;
+    private static final long QUAD_ID_MASK = (1L << QUAD_ID_BITS) - 1;
+    static {
+        for (int mask = 1; mask < (1 << QUAD_CELLS); mask++) {
+            int low = Integer.numberOfTrailingZeros(mask);
+            int pow = 1;
+            for (int i = 0; i < low; i++) {
+                pow *= 3;
+            }
+            TERNARY[mask] = TERNARY[mask & (mask - 1)] + pow;
+        }
+    }
+
+    // Scratch set for getDistinctLegalMovesInto, one per thread
+    private static final int DEDUP_SIZE = 512;
+    private static final ThreadLocal<long[]> DEDUP_KEYS = ThreadLocal.withInitial(() -> new long[DEDUP_SIZE]);
+
+    // The 8 symmetries of the square (rotations and reflections) map quadrants onto
+    // quadrants. SYMMETRY_TABLES[sym * NUM_QUADS + quad][mask] is the image of the
+    // 9-bit contents mask of quadrant quad under symmetry sym.
+    public static final int NUM_SYMMETRIES = 8;
+    private static final long[][] SYMMETRY_TABLES = new long[NUM_SYMMETRIES * NUM_QUADS][1 << QUAD_CELLS];
+    static {
+        int n = BOARD_SIZE - 1;
+        for (int sym = 0; sym < NUM_SYMMETRIES; sym++) {
+            for (int x = 0; x < BOARD_SIZE; x++) {
+                for (int y = 0; y < BOARD_SIZE; y++) {
+                    int tx = (sym & 1) == 0 ? x : y; // Transpose
+                    int ty = (sym & 1) == 0 ? y : x;
+                    tx = (sym & 2) == 0 ? tx : n - tx; // Vertical flip
+                    ty = (sym & 4) == 0 ? ty : n - ty; // Horizontal flip
+                    int bit = Long.numberOfTrailingZeros(CELL_BIT[x * BOARD_SIZE + y]);
+                    long[] table = SYMMETRY_TABLES[sym * NUM_QUADS + bit / QUAD_CELLS];
+                    long image = CELL_BIT[tx * BOARD_SIZE + ty];
+                    for (int mask = 0; mask < (1 << QUAD_CELLS); mask++) {
+                        if ((mask & (1 << (bit % QUAD_CELLS))) != 0) {
+                            table[mask] |= image;
+                        }
+                    }
                 }
             }
         }
+    }
+
+    // Zobrist keys. A quadrant's sub-hash only depends on its contents (QUAD_*_KEYS),
+    // and is rotated by its slot when combined into the board hash. A swap therefore
+    // moves two sub-hashes between slots instead of rehashing 18 cells.
+    private static final int HASH_ROTATION = 16;
+    private static final long[] QUAD_WHITE_KEYS = new long[1 << QUAD_CELLS];
+    private static final long[] QUAD_BLACK_KEYS = new long[1 << QUAD_CELLS];
+    private static final long[] WHITE_CELL_KEYS = new long[BOARD_SIZE * BOARD_SIZE];
+    private static final long[] BLACK_CELL_KEYS = new long[BOARD_SIZE * BOARD_SIZE];
+    private static final long NULL_MOVE_KEY;
+    static {
+        Random keys = new Random(0x5EED_2019L); // Fixed seed so hashes are stable across runs
+        long[] whiteKeys = new long[QUAD_CELLS];
+        long[] blackKeys = new long[QUAD_CELLS];
+        for (int i = 0; i < QUAD_CELLS; i++) {
+            whiteKeys[i] = keys.nextLong();
+            blackKeys[i] = keys.nextLong();
+        }
+        for (int mask = 1; mask < (1 << QUAD_CELLS); mask++) {
+            int low = Integer.numberOfTrailingZeros(mask);
+            QUAD_WHITE_KEYS[mask] = QUAD_WHITE_KEYS[mask & (mask - 1)] ^ whiteKeys[low];
+            QUAD_BLACK_KEYS[mask] = QUAD_BLACK_KEYS[mask & (mask - 1)] ^ blackKeys[low];
+        }
+        for (int cell = 0; cell < BOARD_SIZE * BOARD_SIZE; cell++) {
+            int bit = Long.numberOfTrailingZeros(CELL_BIT[cell]);
+            int quad = bit / QUAD_CELLS;
+            WHITE_CELL_KEYS[cell] = Long.rotateLeft(whiteKeys[bit % QUAD_CELLS], quad * HASH_ROTATION);
+            BLACK_CELL_KEYS[cell] = Long.rotateLeft(blackKeys[bit % QUAD_CELLS], quad * HASH_ROTATION);
+        }
+        NULL_MOVE_KEY = keys.nextLong(); // Drawn last, so the other keys are unchanged
+    }
+
+    private long white;
+    private long black;
+    private long hash;
+    private int turnPlayer;
+    private int turnNumber;
+    private int winner;
+    private long randSeed; // State of an inlined java.util.Random, so cloning allocates nothing
 
-        rand = new Random(2019);
+    PentagoBoardState() {
+        super();
+        this.white = 0L;
+        this.black = 0L;
+        this.hash = 0L;
+
+        randSeed = initialRandSeed();
         winner = Board.NOBODY;
         turnPlayer = FIRST_PLAYER;
         turnNumber = 0;
@@ -91,30 +184,43 @@ public class PentagoBoardState extends BoardState {
     // For cloning
     private PentagoBoardState(PentagoBoardState pbs) {
         super();
-        this.board = new Piece[BOARD_SIZE][BOARD_SIZE];
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            System.arraycopy(pbs.board[i], 0, this.board[i], 0, BOARD_SIZE);
-        }
-        this.quadrants = new Piece[NUM_QUADS][QUAD_SIZE][QUAD_SIZE];
-        for (int i = 0; i < NUM_QUADS; i++) {
-            for (int j = 0; j < QUAD_SIZE; j++) {
-                System.arraycopy(pbs.quadrants[i][j], 0, this.quadrants[i][j], 0, QUAD_SIZE);
-            }
-        }
+        this.white = pbs.white;
+        this.black = pbs.black;
+        this.hash = pbs.hash;
 
-        rand = new Random(2019);
+        randSeed = initialRandSeed();
         this.winner = pbs.winner;
         this.turnPlayer = pbs.turnPlayer;
         this.turnNumber = pbs.turnNumber;
     }
 
-    Piece[][] getBoard() { return this.board; }
+    /**
+     * Places a piece without processing a move. Only used by the GUI to preview a
+     * placement on its own copy of the board.
+     */
+    void setPieceAt(int xPos, int yPos, Piece piece) {
+        long bit = CELL_BIT[xPos * BOARD_SIZE + yPos];
+        white &= ~bit;
+        black &= ~bit;
+        if (piece == Piece.WHITE) {
+            white |= bit;
+        } else if (piece == Piece.BLACK) {
+            black |= bit;
+        }
+        hash = computeHash();
+    }
 
     @Override
     public Object clone() {
         return new PentagoBoardState(this);
     }
 
+    /**
+     * @return a 64-bit Zobrist hash of the pieces on the board, kept up to date by
+     *         every move and identical for identical boards
+     */
+    public long getHash() { return hash; }
+
     @Override
     public int getWinner() { return winner; }
 
@@ -128,7 +234,7 @@ public class PentagoBoardState extends BoardState {
     public int getTurnNumber() { return turnNumber; }
 
     @Override
-    public boolean isInitialized() { return board != null; }
+    public boolean isInitialized() { return true; }
 
     @Override
     public int firstPlayer() { return FIRST_PLAYER; }
@@ -137,37 +243,291 @@ public class PentagoBoardState extends BoardState {
 
     @Override
     public Move getRandomMove() {
-        ArrayList<PentagoMove> moves = getAllLegalMoves();
-        return moves.get(rand.nextInt(moves.size()));
+        // Same choice as picking from getAllLegalMoves, without building the list
+        int index = nextRandomInt(getNumEmptyCells() * PentagoMove.NUM_SWAPS);
+        return PentagoMove.fromCode(getLegalMoveCode(index), turnPlayer);
+    }
+
+    /**
+     * Picks a legal move by its index, without building the list of legal moves, so
+     * that a random move can be drawn with any random number generator.
+     * @param index 0 <= index < getNumEmptyCells() * PentagoMove.NUM_SWAPS
+     * @return the packed code of getAllLegalMoves().get(index)
+     */
+    public int getLegalMoveCode(int index) {
+        int emptyIndex = index / PentagoMove.NUM_SWAPS;
+        long occupied = white | black;
+        for (int cell = 0; cell < BOARD_SIZE * BOARD_SIZE; cell++) {
+            if ((occupied & CELL_BIT[cell]) == 0 && emptyIndex-- == 0) {
+                return cell * PentagoMove.NUM_SWAPS + index % PentagoMove.NUM_SWAPS;
+            }
+        }
+        throw new IllegalStateException("No legal moves");
+    }
+
+    // Same sequence as new Random(2019)
+    private static long initialRandSeed() {
+        return (2019L ^ 0x5DEECE66DL) & ((1L << 48) - 1);
+    }
+
+    // Same algorithm as Random.nextInt(bound)
+    private int nextRandomInt(int bound) {
+        int r = nextRandomBits(31);
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return (int) ((bound * (long) r) >> 31);
+        }
+        for (int u = r; u - (r = u % bound) + m < 0; u = nextRandomBits(31)) {
+        }
+        return r;
+    }
+
+    private int nextRandomBits(int bits) {
+        randSeed = (randSeed * 0x5DEECE66DL + 0xBL) & ((1L << 48) - 1);
+        return (int) (randSeed >>> (48 - bits));
     }
 
     public Piece getPieceAt(int xPos, int yPos) {
         if (xPos < 0 || xPos >= BOARD_SIZE || yPos < 0 || yPos >= BOARD_SIZE) {
             throw new IllegalArgumentException("Out of range");
         }
-        return board[xPos][yPos];
+        return pieceAt(xPos, yPos);
+    }
+
+    private Piece pieceAt(int xPos, int yPos) {
+        long bit = CELL_BIT[xPos * BOARD_SIZE + yPos];
+        if ((white & bit) != 0) { return Piece.WHITE; }
+        if ((black & bit) != 0) { return Piece.BLACK; }
+        return Piece.EMPTY;
+    }
+
+    private boolean isEmptyAt(int xPos, int yPos) {
+        return ((white | black) & CELL_BIT[xPos * BOARD_SIZE + yPos]) == 0;
     }
 
     public Piece getPieceAt(PentagoCoord coord) {
         return getPieceAt(coord.getX(), coord.getY());
     }
 
+    /**
+     * @return the number of empty cells, i.e. pieces left to play before the board is full
+     */
+    public int getNumEmptyCells() {
+        return BOARD_SIZE * BOARD_SIZE - Long.bitCount(white | black);
+    }
+
     public ArrayList<PentagoMove> getAllLegalMoves() {
-        ArrayList<PentagoMove> legalMoves = new ArrayList<>();
-        for (int i = 0; i < BOARD_SIZE; i++) { //Iterate through positions on board
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                if (board[i][j] == Piece.EMPTY) {
-                    for (int k = 0; k < NUM_QUADS - 1; k++) { // Iterate through valid swaps
-                        for (int l = k+1; l < NUM_QUADS; l++) {
-                            legalMoves.add(new PentagoMove(i, j, intToQuad.get(k), intToQuad.get(l), turnPlayer));
-                        }
-                    }
+        long occupied = white | black;
+        ArrayList<PentagoMove> legalMoves = new ArrayList<>(getNumEmptyCells() * PentagoMove.NUM_SWAPS);
+        for (int cell = 0; cell < BOARD_SIZE * BOARD_SIZE; cell++) { //Iterate through positions on board
+            if ((occupied & CELL_BIT[cell]) == 0) {
+                for (int swap = 0; swap < PentagoMove.NUM_SWAPS; swap++) { // Iterate through valid swaps
+                    legalMoves.add(PentagoMove.fromCode(cell * PentagoMove.NUM_SWAPS + swap, turnPlayer));
+                }
+            }
+        }
+        return legalMoves;
+    }
+
+    /**
+     * Writes the packed codes of all legal moves into buf, in the same order as
+     * getAllLegalMoves, without allocating.
+     * @param buf buffer with room for at least PentagoMove.NUM_CODES codes
+     * @return the number of codes written
+     */
+    public int getAllLegalMovesInto(int[] buf) {
+        long occupied = white | black;
+        int n = 0;
+        for (int cell = 0; cell < BOARD_SIZE * BOARD_SIZE; cell++) {
+            if ((occupied & CELL_BIT[cell]) == 0) {
+                int code = cell * PentagoMove.NUM_SWAPS;
+                for (int swap = 0; swap < PentagoMove.NUM_SWAPS; swap++) {
+                    buf[n++] = code + swap;
                 }
             }
         }
+        return n;
+    }
+
+    /**
+     * Like getAllLegalMoves, but keeps only the first move (in getAllLegalMoves order)
+     * leading to each distinct successor position. Swaps of identical quadrants and
+     * different placements ending on the same board are dropped.
+     */
+    public ArrayList<PentagoMove> getDistinctLegalMoves() {
+        int[] codes = new int[PentagoMove.NUM_CODES];
+        int n = getDistinctLegalMovesInto(codes);
+        ArrayList<PentagoMove> legalMoves = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            legalMoves.add(PentagoMove.fromCode(codes[i], turnPlayer));
+        }
         return legalMoves;
     }
 
+    /**
+     * Writes the packed codes of getDistinctLegalMoves into buf.
+     * @param buf buffer with room for at least PentagoMove.NUM_CODES codes
+     * @return the number of codes written
+     */
+    public int getDistinctLegalMovesInto(int[] buf) {
+        long[] seen = DEDUP_KEYS.get();
+        Arrays.fill(seen, 0L);
+        long occupied = white | black;
+        int n = 0;
+        for (int cell = 0; cell < BOARD_SIZE * BOARD_SIZE; cell++) {
+            long bit = CELL_BIT[cell];
+            if ((occupied & bit) != 0) { continue; }
+            long w = turnPlayer == WHITE ? white | bit : white;
+            long b = turnPlayer == WHITE ? black : black | bit;
+            // A board is identified exactly by its four quadrant ids
+            long placedKey = quadrantKey(w, b);
+            for (int swap = 0; swap < PentagoMove.NUM_SWAPS; swap++) {
+                int code = cell * PentagoMove.NUM_SWAPS + swap;
+                int shiftA = PentagoMove.getASwapIndex(code) * QUAD_ID_BITS;
+                int shiftB = PentagoMove.getBSwapIndex(code) * QUAD_ID_BITS;
+                long delta = ((placedKey >>> shiftA) ^ (placedKey >>> shiftB)) & QUAD_ID_MASK;
+                long key = placedKey ^ (delta << shiftA) ^ (delta << shiftB);
+                if (addKey(seen, key)) {
+                    buf[n++] = code;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Like getDistinctLegalMoves, but also drops moves whose successor is a rotation
+     * or reflection of an earlier move's successor. Such moves have the same game
+     * value, so this is meant for pruning at the root of a search.
+     */
+    public ArrayList<PentagoMove> getSymmetryReducedMoves() {
+        int[] codes = new int[PentagoMove.NUM_CODES];
+        int n = getSymmetryReducedMovesInto(codes);
+        ArrayList<PentagoMove> legalMoves = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            legalMoves.add(PentagoMove.fromCode(codes[i], turnPlayer));
+        }
+        return legalMoves;
+    }
+
+    /**
+     * Writes the packed codes of getSymmetryReducedMoves into buf.
+     * @param buf buffer with room for at least PentagoMove.NUM_CODES codes
+     * @return the number of codes written
+     */
+    public int getSymmetryReducedMovesInto(int[] buf) {
+        int n = getDistinctLegalMovesInto(buf);
+        long[] seen = DEDUP_KEYS.get();
+        Arrays.fill(seen, 0L);
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            long undoToken = doMove(buf[i]);
+            long key = canonicalKey(white, black);
+            undoMove(undoToken);
+            if (addKey(seen, key)) {
+                buf[kept++] = buf[i];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return a copy of this state transformed by the symmetry (rotation or
+     *         reflection) that gives its canonical form; all 8 symmetric images of a
+     *         board have the same canonical form
+     */
+    public PentagoBoardState getCanonicalForm() {
+        PentagoBoardState canonical = new PentagoBoardState(this);
+        int sym = canonicalSymmetry(white, black);
+        canonical.white = transform(white, sym);
+        canonical.black = transform(black, sym);
+        canonical.hash = canonical.computeHash();
+        return canonical;
+    }
+
+    /**
+     * @return the hash of the canonical form, equal for all 8 symmetric images of
+     *         this board
+     */
+    public long getCanonicalHash() {
+        int sym = canonicalSymmetry(white, black);
+        return computeHash(transform(white, sym), transform(black, sym));
+    }
+
+    private static long transform(long bits, int sym) {
+        long image = 0L;
+        for (int quad = 0; quad < NUM_QUADS; quad++) {
+            image |= SYMMETRY_TABLES[sym * NUM_QUADS + quad][(int) ((bits >>> (quad * QUAD_CELLS)) & QUAD_MASK)];
+        }
+        return image;
+    }
+
+    /**
+     * @return the symmetry whose image of the board is smallest, comparing white then
+     *         black bitboards
+     */
+    private static int canonicalSymmetry(long white, long black) {
+        int best = 0;
+        long bestWhite = white;
+        long bestBlack = black;
+        for (int sym = 1; sym < NUM_SYMMETRIES; sym++) {
+            long w = transform(white, sym);
+            if (w > bestWhite) { continue; }
+            long b = transform(black, sym);
+            if (w < bestWhite || b < bestBlack) {
+                best = sym;
+                bestWhite = w;
+                bestBlack = b;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return an exact key (packed quadrant ids) of the canonical form of the board
+     */
+    private static long canonicalKey(long white, long black) {
+        int sym = canonicalSymmetry(white, black);
+        return quadrantKey(transform(white, sym), transform(black, sym));
+    }
+
+    private static long quadrantKey(long white, long black) {
+        long key = 0L;
+        for (int quad = 0; quad < NUM_QUADS; quad++) {
+            key |= (long) quadrantId(white, black, quad) << (quad * QUAD_ID_BITS);
+        }
+        return key;
+    }
+
+    /**
+     * @param quad quadrant slot (TL, TR, BL, BR ordinal)
+     * @return the id of the quadrant's contents: the base-3 number whose digit for
+     *         local cell row * 3 + col is 0 for empty, 1 for white and 2 for black,
+     *         so 0 <= id < PentagoQuadrantTables.NUM_IDS
+     */
+    public int getQuadrantId(int quad) {
+        return quadrantId(white, black, quad);
+    }
+
+    private static int quadrantId(long white, long black, int quad) {
+        int shift = quad * QUAD_CELLS;
+        return TERNARY[(int) ((white >>> shift) & QUAD_MASK)] + 2 * TERNARY[(int) ((black >>> shift) & QUAD_MASK)];
+    }
+
+    /**
+     * Adds a non-zero key to an open-addressing set.
+     * @return true if the key was not in the set yet
+     */
+    private static boolean addKey(long[] set, long key) {
+        int i = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (set.length - 1);
+        while (set[i] != 0L) {
+            if (set[i] == key) { return false; }
+            i = (i + 1) & (set.length - 1);
+        }
+        set[i] = key;
+        return true;
+    }
+
     /**
      * Check if the given move is legal
      * @param m the move
@@ -178,7 +538,7 @@ public class PentagoBoardState extends BoardState {
         PentagoCoord c = m.getMoveCoord();
         if (c.getX() >= BOARD_SIZE || c.getX() < 0 || c.getY() < 0 || c.getY() >= BOARD_SIZE) { return false; }
         if (turnPlayer != m.getPlayerID() || m.getPlayerID() == ILLEGAL) { return false; } //Check right player
-        return board[c.getX()][c.getY()] == Piece.EMPTY;
+        return isEmptyAt(c.getX(), c.getY());
     }
 
     /**
@@ -188,67 +548,235 @@ public class PentagoBoardState extends BoardState {
      */
     public boolean isPlaceLegal(PentagoCoord c) {
         if (c.getX() >= BOARD_SIZE || c.getX() < 0 || c.getY() < 0 || c.getY() >= BOARD_SIZE) { return false; }
-        return board[c.getX()][c.getY()] == Piece.EMPTY;
+        return isEmptyAt(c.getX(), c.getY());
+    }
+
+    /**
+     * Check if the given move wins the game for the turn player: it completes five in a
+     * row for them and not for the opponent. The board is left unchanged.
+     * @param code the packed code of a legal move for the current turn player
+     * @return true if playing the move wins outright
+     */
+    public boolean isWinningMove(int code) {
+        int a = PentagoMove.getASwapIndex(code);
+        int b = PentagoMove.getBSwapIndex(code);
+        long own = (turnPlayer == WHITE ? white : black) | CELL_BIT[PentagoMove.getCell(code)];
+        long other = turnPlayer == WHITE ? black : white;
+        return hasFiveInARow(swapQuadrants(own, a, b)) && !hasFiveInARow(swapQuadrants(other, a, b));
+    }
+
+    /**
+     * Finds a move winning the game at once for the turn player. Only moves on the
+     * player's own threat cells can win, so only those are tried.
+     * @return the packed code of a winning move, or PentagoMove.ILLEGAL_CODE if there is none
+     */
+    public int getWinningMoveCode() {
+        for (long cells = getThreatCells(turnPlayer); cells != 0L; cells &= cells - 1) {
+            int cell = Long.numberOfTrailingZeros(cells);
+            for (int swap = 0; swap < PentagoMove.NUM_SWAPS; swap++) {
+                int code = cell * PentagoMove.NUM_SWAPS + swap;
+                if (isWinningMove(code)) { return code; }
+            }
+        }
+        return PentagoMove.ILLEGAL_CODE;
+    }
+
+    /**
+     * Finds the cells where the given player could complete five in a row if it were
+     * their turn, i.e. the cells of their moves doing so: the single empty cell of a
+     * line holding four of their pieces once some pair of quadrants is swapped, or any
+     * empty cell if a swap alone completes a line. Placing a piece on the single empty
+     * cell of a line blocks that threat (on this board; the blocking move's own swap
+     * changes the picture).
+     * @param player WHITE or BLACK
+     * @return a mask with bit x * BOARD_SIZE + y set for every threatened cell (x, y)
+     */
+    public long getThreatCells(int player) {
+        long own = player == WHITE ? white : black;
+        if (Long.bitCount(own) < WIN_LENGTH - 1) { return 0L; }
+        long empty = ~(white | black) & BOARD_MASK;
+        long threats = 0L;
+        // The codes of cell 0 are one move for each pair of quadrants
+        for (int swap = 0; swap < PentagoMove.NUM_SWAPS; swap++) {
+            int a = PentagoMove.getASwapIndex(swap);
+            int b = PentagoMove.getBSwapIndex(swap);
+            long swappedOwn = swapQuadrants(own, a, b);
+            long swappedEmpty = swapQuadrants(empty, a, b);
+            long holes = 0L;
+            for (long line : WIN_LINES) {
+                long hole = line & swappedEmpty;
+                int count = Long.bitCount(swappedOwn & line);
+                if (count == WIN_LENGTH) {
+                    holes = swappedEmpty;
+                    break;
+                }
+                if (count == WIN_LENGTH - 1 && hole != 0L) {
+                    holes |= hole;
+                }
+            }
+            threats |= swapQuadrants(holes, a, b); // A swap is its own inverse
+        }
+        long cells = 0L;
+        for (long bits = threats; bits != 0L; bits &= bits - 1) {
+            cells |= 1L << BIT_CELL[Long.numberOfTrailingZeros(bits)];
+        }
+        return cells;
     }
 
     public void processMove(PentagoMove m) throws IllegalArgumentException {
         if (!isLegal(m)) { throw new IllegalArgumentException("Invalid move. Move: " + m.toPrettyString()); }
-        updateQuadrants(m);
+        doMove(m);
+    }
+
+    /**
+     * Plays the move in place, exactly like processMove but without the legality check.
+     * The returned token lets undoMove restore this state, so a search can walk the
+     * game tree on a single mutable board state.
+     * @param m a legal move for the current turn player
+     * @return the undo token for this move
+     */
+    public long doMove(PentagoMove m) {
+        return doMove(m.getCode());
+    }
+
+    /**
+     * Same as doMove(PentagoMove) for a packed move code.
+     * @param code the packed code of a legal move for the current turn player
+     * @return the undo token for this move
+     */
+    public long doMove(int code) {
+        long undoToken = ((long) winner << 32) | code;
+
+        updateQuadrants(PentagoMove.getCell(code), PentagoMove.getASwapIndex(code), PentagoMove.getBSwapIndex(code));
         updateWinner();
         if (turnPlayer != FIRST_PLAYER) { turnNumber += 1; } // Update the turn number if needed
         turnPlayer = 1 - turnPlayer; // Swap player
+        return undoToken;
     }
 
     /**
-     * Updates the appropriate quandrant based on the location of the move m
-     * @param m: Pentago move
+     * Takes back the last move played with doMove. Moves must be undone in the reverse
+     * order they were played.
+     * @param undoToken the token returned by doMove
      */
-    private void updateQuadrants(PentagoMove m) {
-        Piece turnPiece = turnPlayer == WHITE ? Piece.WHITE : Piece.BLACK;
-        int x = m.getMoveCoord().getX();
-        int y = m.getMoveCoord().getY();
-        boolean isLeftQuadMove = y / 3 == 0;
-        boolean isTopQuadMove = x / 3 == 0;
-        if (isLeftQuadMove && isTopQuadMove) { //Top left quadrant
-            quadrants[0][x][y] = turnPiece;
-        } else if (!isLeftQuadMove && isTopQuadMove) { //Top right quadrant
-            quadrants[1][x][y % QUAD_SIZE] = turnPiece;
-        } else if (isLeftQuadMove) { //Bottom left quadrant
-            quadrants[2][x % QUAD_SIZE][y] = turnPiece;
-        } else { //Bottom right quadrant
-            quadrants[3][x % QUAD_SIZE][y % QUAD_SIZE] = turnPiece;
+    public void undoMove(long undoToken) {
+        int code = (int) undoToken;
+        int cell = PentagoMove.getCell(code);
+
+        turnPlayer = 1 - turnPlayer;
+        if (turnPlayer != FIRST_PLAYER) { turnNumber -= 1; }
+        swapQuadrants(PentagoMove.getASwapIndex(code), PentagoMove.getBSwapIndex(code)); // A swap is its own inverse
+        if (turnPlayer == WHITE) {
+            white &= ~CELL_BIT[cell];
+            hash ^= WHITE_CELL_KEYS[cell];
+        } else {
+            black &= ~CELL_BIT[cell];
+            hash ^= BLACK_CELL_KEYS[cell];
+        }
+        winner = (int) (undoToken >>> 32);
+    }
+
+    /**
+     * Plays only the swap of a move, without placing a piece: a pass of the placement
+     * phase, which the rules do not allow. Only for a search testing whether the turn
+     * player's position is good enough that even giving up a piece does not spoil it.
+     * The hash also changes by a key of its own, so the position is not mistaken for
+     * the one with the same pieces and the other player to move.
+     * @param swap the index of the quadrant pair to swap, 0 <= swap < PentagoMove.NUM_SWAPS
+     * @return the undo token for undoNullMove
+     */
+    public long doNullMove(int swap) {
+        long undoToken = ((long) winner << 32) | swap;
+
+        hash ^= NULL_MOVE_KEY;
+        swapQuadrants(PentagoMove.getASwapIndex(swap), PentagoMove.getBSwapIndex(swap));
+        updateWinner();
+        if (turnPlayer != FIRST_PLAYER) { turnNumber += 1; }
+        turnPlayer = 1 - turnPlayer;
+        return undoToken;
+    }
+
+    /**
+     * Takes back the last move played with doNullMove.
+     * @param undoToken the token returned by doNullMove
+     */
+    public void undoNullMove(long undoToken) {
+        int swap = (int) undoToken;
+
+        turnPlayer = 1 - turnPlayer;
+        if (turnPlayer != FIRST_PLAYER) { turnNumber -= 1; }
+        swapQuadrants(PentagoMove.getASwapIndex(swap), PentagoMove.getBSwapIndex(swap));
+        hash ^= NULL_MOVE_KEY;
+        winner = (int) (undoToken >>> 32);
+    }
+
+    /**
+     * Places the turn player's piece on the given cell and swaps quadrants a and b,
+     * both as bit operations
+     */
+    private void updateQuadrants(int cell, int a, int b) {
+        if (turnPlayer == WHITE) {
+            white |= CELL_BIT[cell];
+            hash ^= WHITE_CELL_KEYS[cell];
+        } else {
+            black |= CELL_BIT[cell];
+            hash ^= BLACK_CELL_KEYS[cell];
         }
 
         //Swapping mechanism
-        int a = quadToInt.get(m.getASwap());
-        int b = quadToInt.get(m.getBSwap());
-        Piece[][] tmp = quadrants[a];
-        quadrants[a] = quadrants[b];
-        quadrants[b] = tmp;
+        swapQuadrants(a, b);
+    }
 
-        buildBoardFromQuadrants();
+    /**
+     * Swaps quadrants a and b on both bitboards and moves their sub-hashes to their
+     * new slots.
+     */
+    private void swapQuadrants(int a, int b) {
+        long subA = quadrantHash(white, black, a);
+        long subB = quadrantHash(white, black, b);
+        hash ^= Long.rotateLeft(subA, a * HASH_ROTATION) ^ Long.rotateLeft(subB, b * HASH_ROTATION)
+                ^ Long.rotateLeft(subA, b * HASH_ROTATION) ^ Long.rotateLeft(subB, a * HASH_ROTATION);
+        white = swapQuadrants(white, a, b);
+        black = swapQuadrants(black, a, b);
     }
 
     /**
-     * Updates the board after the quadrants have changed.
+     * @return the slot-independent sub-hash of the contents of quadrant quad
      */
-    private void buildBoardFromQuadrants() {
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            int quadrantRow = i < 3 ? i : i - 3;
-            int leftQuad = i < 3 ? 0 : 2;
-            int rightQuad = i < 3 ? 1 : 3;
-            System.arraycopy(quadrants[leftQuad][quadrantRow], 0, board[i], 0, 3);
-            System.arraycopy(quadrants[rightQuad][quadrantRow], 0, board[i], 3, 3);
+    private static long quadrantHash(long white, long black, int quad) {
+        int shift = quad * QUAD_CELLS;
+        return QUAD_WHITE_KEYS[(int) ((white >>> shift) & QUAD_MASK)] ^ QUAD_BLACK_KEYS[(int) ((black >>> shift) & QUAD_MASK)];
+    }
+
+    private long computeHash() {
+        return computeHash(white, black);
+    }
+
+    private static long computeHash(long white, long black) {
+        long h = 0L;
+        for (int quad = 0; quad < NUM_QUADS; quad++) {
+            h ^= Long.rotateLeft(quadrantHash(white, black, quad), quad * HASH_ROTATION);
         }
+        return h;
+    }
+
+    /**
+     * Exchanges the 9-bit blocks of quadrants a and b (delta swap).
+     */
+    private static long swapQuadrants(long bits, int a, int b) {
+        int shiftA = a * QUAD_CELLS;
+        int shiftB = b * QUAD_CELLS;
+        long delta = ((bits >>> shiftA) ^ (bits >>> shiftB)) & QUAD_MASK;
+        return bits ^ (delta << shiftA) ^ (delta << shiftB);
     }
 
     /**
      * Checks if the game has ended, and changes the winner attribute if so.
      */
     private void updateWinner() {
-        boolean playerWin = checkVerticalWin(turnPlayer) || checkHorizontalWin(turnPlayer) || checkDiagRightWin(turnPlayer) || checkDiagLeftWin(turnPlayer);
+        boolean playerWin = hasFiveInARow(turnPlayer == WHITE ? white : black);
         int otherPlayer = 1 - turnPlayer;
-        boolean otherWin = checkVerticalWin(otherPlayer) || checkHorizontalWin(otherPlayer) || checkDiagRightWin(otherPlayer) || checkDiagLeftWin(otherPlayer);
+        boolean otherWin = hasFiveInARow(otherPlayer == WHITE ? white : black);
         if (playerWin) { // Current player has won
             winner = otherWin ? Board.DRAW : turnPlayer;
         } else if (otherWin) { // Player's move caused the opponent to win
@@ -263,52 +791,14 @@ public class PentagoBoardState extends BoardState {
         return ((turnNumber >= MAX_TURNS - 1) && turnPlayer == BLACK) || winner != Board.NOBODY;
     }
 
-    private boolean checkVerticalWin(int player) {
-        return checkWinRange(player, 0, 2, 0, BOARD_SIZE, getNextVertical);
-    }
-
-    private boolean checkHorizontalWin(int player) {
-        return checkWinRange(player, 0, BOARD_SIZE, 0, 2, getNextHorizontal);
-    }
-
-    private boolean checkDiagRightWin(int player) {
-        return checkWinRange(player, 0, 2, 0, 2, getNextDiagRight);
-    }
-
-    private boolean checkDiagLeftWin(int player) {
-        return checkWinRange(player, 0 ,2, BOARD_SIZE - 2, BOARD_SIZE, getNextDiagLeft);
-    }
-
-    private boolean checkWinRange(int player, int xStart, int xEnd, int yStart, int yEnd, UnaryOperator<PentagoCoord> direction) {
-        boolean win = false;
-        for (int i = xStart; i < xEnd; i++) {
-            for (int j = yStart; j < yEnd; j++) {
-                win |= checkWin(player, new PentagoCoord(i, j), direction);
-                if (win) { return true; }
-            }
+    private static boolean hasFiveInARow(long bits) {
+        if (Long.bitCount(bits) < WIN_LENGTH) { return false; }
+        for (long line : WIN_LINES) {
+            if ((bits & line) == line) { return true; }
         }
         return false;
     }
 
-    private boolean checkWin(int player, PentagoCoord start, UnaryOperator<PentagoCoord> direction) {
-        int winCounter = 0;
-        Piece currColour = player == 0 ? Piece.WHITE : Piece.BLACK;
-        PentagoCoord current = start;
-        while(true) {
-            try {
-                if (currColour == this.board[current.getX()][current.getY()]) {
-                    winCounter++;
-                    current = direction.apply(current);
-                } else {
-                    break;
-                }
-            } catch (IllegalArgumentException e) { //We have run off the board
-                break;
-            }
-        }
-        return winCounter >= 5;
-    }
-
     public void printBoard() {
         System.out.println(this.toString());
     }
@@ -322,7 +812,7 @@ public class PentagoBoardState extends BoardState {
             boardString.append("|");
             for (int j = 0; j < BOARD_SIZE; j++) {
                 boardString.append(" ");
-                boardString.append(board[i][j].toString());
+                boardString.append(pieceAt(i, j).toString());
                 boardString.append(" |");
                 if (j == QUAD_SIZE - 1) {
                     boardString.append("|");
@@ -1,5 +1,7 @@
 package pentago_swap;
 
+import java.util.Arrays;
+
 import boardgame.Move;
 import pentago_swap.PentagoBoardState.Quadrant;
 
@@ -8,12 +10,50 @@ import pentago_swap.PentagoBoardState.Quadrant;
  * @author mgrenander
  */
 public class PentagoMove extends Move {
+    /*
+     * Packed move codes: code = cell * NUM_SWAPS + swap, where cell = x * BOARD_SIZE + y
+     * and swap indexes the quadrant pairs in SWAP_A/SWAP_B. The player is implied by
+     * the board state, so every code is below 216 and fits in an unsigned byte.
+     */
+    public static final int NUM_SWAPS = 6;
+    public static final int NUM_CODES = PentagoBoardState.BOARD_SIZE * PentagoBoardState.BOARD_SIZE * NUM_SWAPS;
+    public static final int ILLEGAL_CODE = -1;
+    private static final Quadrant[] QUADRANTS = Quadrant.values();
+    private static final int[] SWAP_A = { 0, 0, 0, 1, 1, 2 };
+    private static final int[] SWAP_B = { 1, 2, 3, 2, 3, 3 };
+    private static final int[][] SWAP_INDEX = new int[QUADRANTS.length][QUADRANTS.length];
+    static {
+        for (int[] row : SWAP_INDEX) {
+            Arrays.fill(row, ILLEGAL_CODE);
+        }
+        for (int swap = 0; swap < NUM_SWAPS; swap++) {
+            SWAP_INDEX[SWAP_A[swap]][SWAP_B[swap]] = swap;
+            SWAP_INDEX[SWAP_B[swap]][SWAP_A[swap]] = swap;
+        }
+    }
+
+    // Interned moves, indexed by player then code. These are shared, so callers must
+    // not change their player ID.
+    private static final PentagoMove[][] MOVES = new PentagoMove[2][NUM_CODES];
+    static {
+        for (int player = 0; player < 2; player++) {
+            for (int code = 0; code < NUM_CODES; code++) {
+                int cell = code / NUM_SWAPS;
+                int swap = code % NUM_SWAPS;
+                MOVES[player][code] = new PentagoMove(cell / PentagoBoardState.BOARD_SIZE, cell % PentagoBoardState.BOARD_SIZE,
+                        QUADRANTS[SWAP_A[swap]], QUADRANTS[SWAP_B[swap]], player);
+            }
+        }
+    }
+
     private int playerId;
     private int xMove;
     private int yMove;
     private Quadrant aSwap;
     private Quadrant bSwap;
     private boolean fromBoard;
+    private PentagoCoord coord;
+    private int code;
 
     public PentagoMove(PentagoCoord coord, Quadrant aSwap, Quadrant bSwap, int playerId) {
         this(coord.getX(), coord.getY(), aSwap, bSwap, playerId);
@@ -26,6 +66,7 @@ public class PentagoMove extends Move {
         this.aSwap = aSwap;
         this.bSwap = bSwap;
         this.fromBoard = false;
+        initCode();
     }
 
     public PentagoMove(String formatString) {
@@ -40,10 +81,30 @@ public class PentagoMove extends Move {
         } catch(IllegalArgumentException e) {
             throw new IllegalArgumentException("Received an uninterpretable string format for a PentagoMove.");
         }
+        initCode();
+    }
+
+    private void initCode() {
+        int size = PentagoBoardState.BOARD_SIZE;
+        boolean onBoard = xMove >= 0 && xMove < size && yMove >= 0 && yMove < size;
+        this.coord = onBoard ? new PentagoCoord(xMove, yMove) : null;
+        int swap = (aSwap == null || bSwap == null) ? ILLEGAL_CODE : SWAP_INDEX[aSwap.ordinal()][bSwap.ordinal()];
+        this.code = (onBoard && swap != ILLEGAL_CODE) ? (xMove * size + yMove) * NUM_SWAPS + swap : ILLEGAL_CODE;
     }
 
+    /**
+     * @return the interned move for the given code and player; never allocates
+     */
+    public static PentagoMove fromCode(int code, int playerId) { return MOVES[playerId][code]; }
+
+    // Packed code accessors
+    public static int getCell(int code) { return code / NUM_SWAPS; }
+    public static int getASwapIndex(int code) { return SWAP_A[code % NUM_SWAPS]; }
+    public static int getBSwapIndex(int code) { return SWAP_B[code % NUM_SWAPS]; }
+
     // Getters
-    public PentagoCoord getMoveCoord() { return new PentagoCoord(this.xMove, this.yMove); }
+    public PentagoCoord getMoveCoord() { return coord != null ? coord : new PentagoCoord(this.xMove, this.yMove); }
+    public int getCode() { return this.code; }
     public Quadrant getASwap() { return this.aSwap; }
     public Quadrant getBSwap() { return this.bSwap; }
 
@@ -0,0 +1,236 @@
+package pentago_swap;
+
+import boardgame.Board;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Perft: walks the full game tree to a fixed depth with getAllLegalMoves and
+ * processMove, counting the positions and the finished games (white wins, black wins,
+ * draws) reached at every ply, plus a checksum of their hashes. Comparing the
+ * counts with the reference below checks a board representation for exact
+ * equivalence with the current one, and the nodes/second measure its speed. The
+ * checksums are compared too, but only reported: a representation which hashes
+ * differently has different ones, and passes on the counts alone.
+ *
+ * From the root directory of the project, run
+ *
+ *     java -cp bin pentago_swap.PentagoPerft [depth [threads [position]]]
+ *
+ * where threads is 1 for a single-threaded walk (default is all processors) and
+ * position is "empty" (default) or "midgame". Plies deeper than the reference
+ * (4 for both positions) are printed but not checked. The empty board counts were
+ * cross-checked against the original array-based board, and the midgame counts up to
+ * ply 3 as well (there are no finished games before ply 9 on the empty board).
+ */
+public class PentagoPerft {
+    // Transportable moves leading to the "midgame" position, white and black alternating
+    private static final String[] MIDGAME = {
+            "3 5 TL TR 0", "5 1 TL BR 1", "2 1 TR BR 0", "1 2 TL BL 1", "4 5 TR BR 0", "4 0 TL BL 1", "4 2 TR BR 0",
+            "4 0 BL BR 1", "3 5 TL BR 0", "4 4 TL BL 1", "2 2 TL BR 0", "4 4 TL BR 1", "5 0 BL BR 0", "2 0 TL BL 1" };
+
+    // Reference counts per ply: nodes, white wins, black wins and draws
+    private static final long[][] EMPTY_REFERENCE = {
+            { 216L, 0L, 0L, 0L },
+            { 45360L, 0L, 0L, 0L },
+            { 9253440L, 0L, 0L, 0L },
+            { 1832181120L, 0L, 0L, 0L } };
+    private static final long[][] MIDGAME_REFERENCE = {
+            { 132L, 2L, 0L, 0L },
+            { 16380L, 206L, 242L, 4L },
+            { 1911360L, 47424L, 25096L, 1064L },
+            { 209506464L, 4358160L, 5464372L, 179876L } };
+
+    // Reference hash checksums per ply, for the current Zobrist keys
+    private static final long[] EMPTY_CHECKSUMS = { 6336661365489424266L, -8534732998534352736L,
+            -3695259879453148432L, 3218152512927679232L };
+    private static final long[] MIDGAME_CHECKSUMS = { 40058402295618631L, 8133486297564452654L,
+            -5775137912430430700L, -2404632457257168998L };
+
+    /**
+     * Per-ply counts of a perft run; index 0 is ply 1.
+     */
+    public static final class Counts {
+        final long[] nodes;
+        final long[] whiteWins;
+        final long[] blackWins;
+        final long[] draws;
+        final long[] checksum;
+
+        Counts(int depth) {
+            nodes = new long[depth];
+            whiteWins = new long[depth];
+            blackWins = new long[depth];
+            draws = new long[depth];
+            checksum = new long[depth];
+        }
+
+        void add(Counts other) {
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] += other.nodes[i];
+                whiteWins[i] += other.whiteWins[i];
+                blackWins[i] += other.blackWins[i];
+                draws[i] += other.draws[i];
+                checksum[i] += other.checksum[i];
+            }
+        }
+
+        long[] row(int ply) {
+            return new long[] { nodes[ply], whiteWins[ply], blackWins[ply], draws[ply] };
+        }
+
+        long totalNodes() {
+            long total = 0;
+            for (long n : nodes) {
+                total += n;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Single-threaded perft of the given position.
+     */
+    public static Counts perft(PentagoBoardState pbs, int depth) {
+        Counts counts = new Counts(depth);
+        walk(pbs, 0, depth, counts);
+        return counts;
+    }
+
+    /**
+     * Fork-join perft of the given position: every root move, and every reply to it,
+     * is a separate task.
+     */
+    public static Counts perftParallel(PentagoBoardState pbs, int depth, ForkJoinPool pool) {
+        return pool.invoke(new PerftTask(pbs, 0, depth, 2));
+    }
+
+    private static void walk(PentagoBoardState pbs, int ply, int depth, Counts counts) {
+        for (PentagoMove move : pbs.getAllLegalMoves()) {
+            PentagoBoardState child = (PentagoBoardState) pbs.clone();
+            child.processMove(move);
+            if (record(child, ply, counts) && ply + 1 < depth) {
+                walk(child, ply + 1, depth, counts);
+            }
+        }
+    }
+
+    /**
+     * Counts a position reached at ply + 1. The game goes on until there is a winner
+     * or a draw: gameOver() is already true once White has placed the 35th piece,
+     * but Black still plays the 36th.
+     * @return true if the game goes on from there
+     */
+    private static boolean record(PentagoBoardState child, int ply, Counts counts) {
+        counts.nodes[ply]++;
+        counts.checksum[ply] += child.getHash();
+        switch (child.getWinner()) {
+            case PentagoBoardState.WHITE:
+                counts.whiteWins[ply]++;
+                return false;
+            case PentagoBoardState.BLACK:
+                counts.blackWins[ply]++;
+                return false;
+            case Board.DRAW:
+                counts.draws[ply]++;
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static class PerftTask extends RecursiveTask<Counts> {
+        private static final long serialVersionUID = 1L;
+
+        private final PentagoBoardState pbs;
+        private final int ply;
+        private final int depth;
+        private final int splitPlies;
+
+        PerftTask(PentagoBoardState pbs, int ply, int depth, int splitPlies) {
+            this.pbs = pbs;
+            this.ply = ply;
+            this.depth = depth;
+            this.splitPlies = splitPlies;
+        }
+
+        @Override
+        protected Counts compute() {
+            Counts counts = new Counts(depth);
+            if (splitPlies == 0) {
+                walk(pbs, ply, depth, counts);
+                return counts;
+            }
+            List<PerftTask> tasks = new ArrayList<>();
+            for (PentagoMove move : pbs.getAllLegalMoves()) {
+                PentagoBoardState child = (PentagoBoardState) pbs.clone();
+                child.processMove(move);
+                if (record(child, ply, counts) && ply + 1 < depth) {
+                    tasks.add(new PerftTask(child, ply + 1, depth, splitPlies - 1));
+                }
+            }
+            for (PerftTask task : invokeAll(tasks)) {
+                counts.add(task.join());
+            }
+            return counts;
+        }
+    }
+
+    static PentagoBoardState position(String name) {
+        PentagoBoardState pbs = new PentagoBoardState();
+        if (name.equals("midgame")) {
+            for (String move : MIDGAME) {
+                pbs.processMove(new PentagoMove(move));
+            }
+        } else if (!name.equals("empty")) {
+            throw new IllegalArgumentException("Unknown position: " + name);
+        }
+        return pbs;
+    }
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        String name = args.length > 2 ? args[2] : "empty";
+        PentagoBoardState pbs = position(name);
+
+        long start = System.nanoTime();
+        Counts counts;
+        if (threads <= 1) {
+            counts = perft(pbs, depth);
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            counts = perftParallel(pbs, depth, pool);
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(String.format("perft %s depth %d, %d thread(s)", name, depth, Math.max(1, threads)));
+        System.out.println(String.format("%4s %14s %12s %12s %12s %22s", "ply", "nodes", "white wins", "black wins",
+                "draws", "checksum"));
+        boolean match = true;
+        boolean checksumMatch = true;
+        long[][] reference = name.equals("midgame") ? MIDGAME_REFERENCE : EMPTY_REFERENCE;
+        long[] checksums = name.equals("midgame") ? MIDGAME_CHECKSUMS : EMPTY_CHECKSUMS;
+        for (int ply = 0; ply < depth; ply++) {
+            long[] row = counts.row(ply);
+            boolean rowMatch = ply >= reference.length || Arrays.equals(row, reference[ply]);
+            boolean rowChecksumMatch = ply >= checksums.length || counts.checksum[ply] == checksums[ply];
+            match &= rowMatch;
+            checksumMatch &= rowChecksumMatch;
+            System.out.println(String.format("%4d %14d %12d %12d %12d %22d%s%s", ply + 1, row[0], row[1], row[2],
+                    row[3], counts.checksum[ply], rowMatch ? "" : "  MISMATCH",
+                    rowChecksumMatch ? "" : "  CHECKSUM DIFFERS"));
+        }
+        System.out.println(String.format("%.2f s, %.0f nodes/s", seconds, counts.totalNodes() / seconds));
+        System.out.println(match ? "Counts match reference." : "COUNTS DO NOT MATCH REFERENCE.");
+        if (!checksumMatch) {
+            System.out.println("Checksums differ: expected if the hash changed, otherwise the positions differ.");
+        }
+        System.exit(match ? 0 : 1);
+    }
+}
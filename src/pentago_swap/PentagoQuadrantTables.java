@@ -0,0 +1,77 @@
+package pentago_swap;
+
+import static pentago_swap.PentagoBoardState.NUM_QUADS;
+import static pentago_swap.PentagoBoardState.QUAD_CELLS;
+import static pentago_swap.PentagoBoardState.QUAD_MASK;
+import static pentago_swap.PentagoBoardState.WIN_LINES;
+
+/**
+ * Tables indexed by quadrant id (see PentagoBoardState.getQuadrantId). A 3x3 quadrant
+ * has only 3^9 possible contents, so a board is fully described by four ids, a swap
+ * just exchanges two of them, and per-quadrant features are O(1) lookups.
+ *
+ * Line counts cover the 32 five-in-a-row lines of the board. For a quadrant id in a
+ * given slot, each line gets one byte holding the number of white (low nibble) and
+ * black (high nibble) pieces the quadrant contributes to it, 8 lines per word.
+ * Summing the words of the four slots gives the counts of the whole board, since no
+ * nibble can exceed 5. Five in a row is not looked up here: PentagoBoardState tests
+ * its bitboards against the line masks directly, which is cheaper than deriving the
+ * four ids first.
+ */
+public final class PentagoQuadrantTables {
+    public static final int NUM_IDS = 19683; // 3^9
+    public static final int NUM_LINES = 32;
+    public static final int LINES_PER_WORD = 8;
+    public static final int LINE_COUNT_WORDS = NUM_LINES / LINES_PER_WORD;
+
+    private static final long[] LINE_COUNTS = new long[NUM_QUADS * NUM_IDS * LINE_COUNT_WORDS];
+    static {
+        for (int id = 0; id < NUM_IDS; id++) {
+            int whiteMask = 0;
+            int blackMask = 0;
+            int digits = id;
+            for (int cell = 0; cell < QUAD_CELLS; cell++) {
+                int digit = digits % 3;
+                digits /= 3;
+                if (digit == 1) {
+                    whiteMask |= 1 << cell;
+                } else if (digit == 2) {
+                    blackMask |= 1 << cell;
+                }
+            }
+            for (int quad = 0; quad < NUM_QUADS; quad++) {
+                for (int line = 0; line < NUM_LINES; line++) {
+                    int local = (int) ((WIN_LINES[line] >>> (quad * QUAD_CELLS)) & QUAD_MASK);
+                    long counts = Integer.bitCount(whiteMask & local) | (Integer.bitCount(blackMask & local) << 4);
+                    LINE_COUNTS[index(quad, id, line / LINES_PER_WORD)] |= counts << ((line % LINES_PER_WORD) * 8);
+                }
+            }
+        }
+    }
+
+    private PentagoQuadrantTables() {
+    }
+
+    private static int index(int quad, int id, int word) {
+        return (quad * NUM_IDS + id) * LINE_COUNT_WORDS + word;
+    }
+
+    /**
+     * @return the packed line counts of word for the whole board given the ids in the
+     *         TL, TR, BL and BR slots
+     */
+    public static long lineCounts(int tl, int tr, int bl, int br, int word) {
+        return LINE_COUNTS[index(0, tl, word)] + LINE_COUNTS[index(1, tr, word)]
+                + LINE_COUNTS[index(2, bl, word)] + LINE_COUNTS[index(3, br, word)];
+    }
+
+    /**
+     * @return the number of white pieces on line (word * 8 + i) of the packed word
+     */
+    public static int whiteCount(long lineCounts, int i) { return (int) (lineCounts >>> (i * 8)) & 0xF; }
+
+    /**
+     * @return the number of black pieces on line (word * 8 + i) of the packed word
+     */
+    public static int blackCount(long lineCounts, int i) { return (int) (lineCounts >>> (i * 8 + 4)) & 0xF; }
+}
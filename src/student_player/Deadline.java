@@ -0,0 +1,80 @@
+package student_player;
+
+/**
+ * Wall-clock time budget of a search, measured with System.nanoTime. The hard limit
+ * aborts the search wherever it is; the soft limit only decides whether a new
+ * iterative deepening iteration is worth starting, since the next iteration usually
+ * takes several times longer than the previous one. A deadline can also be
+ * cancelled from another thread, which expires it at once.
+ */
+public class Deadline {
+
+	/**
+	 * Thrown from inside a search when the hard limit has passed.
+	 */
+	public static class ExpiredException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		public ExpiredException() {
+			// no stack trace, this is control flow
+			super(null, null, false, false);
+		}
+
+	}
+
+	private final long startNanos;
+	private final long hardNanos;
+	private final long softNanos;
+	private volatile boolean cancelled;
+
+	/**
+	 * @param budgetMillis time after which the search is aborted
+	 * @param softFraction fraction of the budget after which no new iteration is
+	 *                     started
+	 */
+	public Deadline(long budgetMillis, double softFraction) {
+		startNanos = System.nanoTime();
+		hardNanos = budgetMillis * 1000000L;
+		softNanos = (long) (hardNanos * softFraction);
+	}
+
+	/**
+	 * @return the time elapsed since the deadline was created, in milliseconds
+	 */
+	public long getElapsedMillis() {
+		return (System.nanoTime() - startNanos) / 1000000L;
+	}
+
+	/**
+	 * Expires the deadline, so that every search checking it stops.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return true if the hard limit has passed or the deadline was cancelled
+	 */
+	public boolean hasExpired() {
+		return cancelled || System.nanoTime() - startNanos >= hardNanos;
+	}
+
+	/**
+	 * @return true if there is enough time left to start another iteration
+	 */
+	public boolean canStartIteration() {
+		return !cancelled && System.nanoTime() - startNanos < softNanos;
+	}
+
+	/**
+	 * @throws ExpiredException if the hard limit has passed or the deadline was
+	 *                          cancelled
+	 */
+	public void check() {
+		if (hasExpired()) {
+			throw new ExpiredException();
+		}
+	}
+
+}
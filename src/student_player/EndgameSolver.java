@@ -0,0 +1,189 @@
+package student_player;
+
+import boardgame.Board;
+import pentago_swap.PentagoBoardState;
+import pentago_swap.PentagoMove;
+
+/**
+ * Exact solver for positions with few empty cells. It searches to the end of the
+ * game, a win or a draw, which comes at the latest when Black places the 36th piece
+ * on the full board, and scores positions only as a win, draw or loss for the player
+ * to move. With three values, a window of width one settles most nodes after their
+ * first good move. The solver has its own transposition table, kept between moves:
+ * an entry is exact at any depth, since it holds the game value.
+ *
+ * Moves are tried in the order: the move stored in the table, moves blocking a
+ * cell where the opponent could complete five in a row, then the others. A player
+ * who can win at once does so without any search.
+ */
+public class EndgameSolver {
+
+	public static final int WIN = 1;
+	public static final int DRAW = 0;
+	public static final int LOSS = -1;
+
+	// longest game from any position: one ply per empty cell
+	private static final int MAX_PLIES = PentagoBoardState.BOARD_SIZE * PentagoBoardState.BOARD_SIZE;
+
+	private final TranspositionTable transpositionTable;
+	// move buffers, one per ply
+	private final int[][] moveBuffers = new int[MAX_PLIES][PentagoMove.NUM_CODES];
+
+	// results of the last search
+	private int value;
+	private int bestMove;
+	private long nodeCount;
+
+	/**
+	 * @param megabytes memory budget of the transposition table
+	 */
+	public EndgameSolver(int megabytes) {
+		transpositionTable = new TranspositionTable(megabytes);
+	}
+
+	/**
+	 * Solves the given position, which must not have a winner, until the deadline.
+	 *
+	 * @return true if the position was solved; getValue and getBestMove then hold
+	 *         the game value and a move achieving it
+	 */
+	public boolean solve(PentagoBoardState boardState, Deadline deadline) {
+		PentagoBoardState state = (PentagoBoardState) boardState.clone();
+		nodeCount = 0;
+		transpositionTable.newSearch();
+		boolean solved;
+		try {
+			value = negamax(state, LOSS, WIN, 0, deadline);
+			solved = true;
+		} catch (Deadline.ExpiredException e) {
+			solved = false;
+		}
+
+		if (SearchConfig.VERBOSE) {
+			String result = solved ? (value == WIN ? "win" : value == DRAW ? "draw" : "loss") : "unsolved";
+			System.out.println(String.format("Endgame solver: %s with %d empty cells in %d ms, %d nodes", result,
+					boardState.getNumEmptyCells(), deadline.getElapsedMillis(), nodeCount));
+		}
+		return solved;
+	}
+
+	/**
+	 * @return the game value of the last position solved, for the player to move
+	 */
+	public int getValue() {
+		return value;
+	}
+
+	/**
+	 * @return a move achieving the game value of the last position solved
+	 */
+	public PentagoMove getBestMove(int playerID) {
+		return PentagoMove.fromCode(bestMove, playerID);
+	}
+
+	/**
+	 * @return the number of nodes of the last search
+	 */
+	public long getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return the game value for the player to move, within the (alpha, beta) window
+	 */
+	private int negamax(PentagoBoardState state, int alpha, int beta, int ply, Deadline deadline) {
+		deadline.check();
+		nodeCount++;
+		int win = state.getWinningMoveCode();
+		if (win != PentagoMove.ILLEGAL_CODE) {
+			if (ply == 0) {
+				bestMove = win;
+			}
+			return WIN;
+		}
+
+		long hash = state.getHash();
+		int hashMove = TranspositionTable.NO_MOVE;
+		long entry = transpositionTable.probe(hash);
+		if (entry != 0) {
+			hashMove = TranspositionTable.getMoveCode(entry);
+			int score = TranspositionTable.getScore(entry);
+			int bound = TranspositionTable.getBound(entry);
+			if (ply > 0 && (bound == TranspositionTable.EXACT
+					|| (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+					|| (bound == TranspositionTable.UPPER_BOUND && score <= alpha))) {
+				return score;
+			}
+		}
+
+		int[] moves = moveBuffers[ply];
+		int count = (ply == 0) ? state.getSymmetryReducedMovesInto(moves) : state.getDistinctLegalMovesInto(moves);
+		order(state, moves, count, hashMove);
+
+		int alphaOrig = alpha;
+		int bestScore = LOSS - 1;
+		int bestCode = moves[0];
+		int mover = state.getTurnPlayer();
+		for (int i = 0; i < count; i++) {
+			long undoToken = state.doMove(moves[i]);
+			int score;
+			int winner = state.getWinner();
+			if (winner != Board.NOBODY) {
+				score = (winner == mover) ? WIN : (winner == Board.DRAW) ? DRAW : LOSS;
+			} else {
+				score = -negamax(state, -beta, -alpha, ply + 1, deadline);
+			}
+			state.undoMove(undoToken);
+			if (score > bestScore) {
+				bestScore = score;
+				bestCode = moves[i];
+			}
+			if (bestScore > alpha) {
+				alpha = bestScore;
+			}
+			if (alpha >= beta) {
+				break;
+			}
+		}
+
+		int bound = TranspositionTable.EXACT;
+		if (bestScore <= alphaOrig) {
+			bound = TranspositionTable.UPPER_BOUND;
+		} else if (bestScore >= beta) {
+			bound = TranspositionTable.LOWER_BOUND;
+		}
+		// bigger subtrees are kept first
+		transpositionTable.store(hash, state.getNumEmptyCells(), bound, bestScore, bestCode);
+		if (ply == 0) {
+			bestMove = bestCode;
+		}
+		return bestScore;
+	}
+
+	/**
+	 * Moves the hash move to the front, followed by the moves on the opponent's
+	 * threat cells.
+	 */
+	private static void order(PentagoBoardState state, int[] moves, int count, int hashMove) {
+		long threats = state.getThreatCells(1 - state.getTurnPlayer());
+		int front = 0;
+		for (int i = 0; i < count; i++) {
+			if (moves[i] == hashMove) {
+				swap(moves, i, front++);
+				break;
+			}
+		}
+		for (int i = front; i < count; i++) {
+			if ((threats & (1L << PentagoMove.getCell(moves[i]))) != 0) {
+				swap(moves, i, front++);
+			}
+		}
+	}
+
+	private static void swap(int[] moves, int i, int j) {
+		int move = moves[i];
+		moves[i] = moves[j];
+		moves[j] = move;
+	}
+
+}
@@ -0,0 +1,127 @@
+package student_player;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Proof table entries on disk, for ProofTable once its memory is full. The file is
+ * a fixed number of buckets of four slots, the bucket chosen by the hash; it is
+ * created sparse, so it only takes the disk space of the buckets written. A full
+ * bucket keeps solved entries and replaces an unsolved one, since an unsolved
+ * entry is only a hint and costs little to compute again.
+ */
+public class FileProofStore implements Closeable {
+
+	// slot layout: key, proof number, disproof number, move code; an empty slot is
+	// all zero, and no real entry has both numbers 0
+	private static final int SLOT_BYTES = 20;
+	private static final int BUCKET_SLOTS = 4;
+	private static final int BUCKET_BYTES = SLOT_BYTES * BUCKET_SLOTS;
+
+	private final FileChannel channel;
+	private final long numBuckets;
+	private final ByteBuffer bucket = ByteBuffer.allocate(BUCKET_BYTES);
+
+	/**
+	 * Opens the store, keeping the entries of a previous run if the file exists.
+	 *
+	 * @param megabytes size of the file
+	 */
+	public FileProofStore(Path path, long megabytes) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		numBuckets = Math.max(1, megabytes * 1024 * 1024 / BUCKET_BYTES);
+	}
+
+	/**
+	 * Looks an entry up.
+	 *
+	 * @param entry receives the proof number, disproof number and move code
+	 * @return false if there is no entry for the hash
+	 */
+	public boolean get(long hash, int[] entry) {
+		readBucket(hash);
+		for (int slot = 0; slot < BUCKET_SLOTS; slot++) {
+			int offset = slot * SLOT_BYTES;
+			if (bucket.getLong(offset) == hash && !isEmpty(offset)) {
+				entry[0] = bucket.getInt(offset + 8);
+				entry[1] = bucket.getInt(offset + 12);
+				entry[2] = bucket.getInt(offset + 16);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void put(long hash, int proof, int disproof, int moveCode) {
+		long position = readBucket(hash);
+		int replace = -1;
+		for (int slot = 0; slot < BUCKET_SLOTS && replace < 0; slot++) {
+			int offset = slot * SLOT_BYTES;
+			if (isEmpty(offset) || bucket.getLong(offset) == hash) {
+				replace = slot;
+			}
+		}
+		for (int slot = 0; slot < BUCKET_SLOTS && replace < 0; slot++) {
+			int offset = slot * SLOT_BYTES;
+			if (bucket.getInt(offset + 8) != 0 && bucket.getInt(offset + 12) != 0) {
+				replace = slot;
+			}
+		}
+		if (replace < 0) {
+			// all solved: the hash picks the victim
+			replace = (int) (hash >>> 62);
+		}
+
+		int offset = replace * SLOT_BYTES;
+		bucket.putLong(offset, hash);
+		bucket.putInt(offset + 8, proof);
+		bucket.putInt(offset + 12, disproof);
+		bucket.putInt(offset + 16, moveCode);
+		try {
+			bucket.clear();
+			channel.write(bucket, position);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Reads the bucket of the hash into the buffer; past the end of the file, it is
+	 * empty.
+	 *
+	 * @return the position of the bucket in the file
+	 */
+	private long readBucket(long hash) {
+		long position = Math.floorMod(hash, numBuckets) * BUCKET_BYTES;
+		bucket.clear();
+		try {
+			while (bucket.hasRemaining()) {
+				if (channel.read(bucket, position + bucket.position()) < 0) {
+					break;
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		while (bucket.hasRemaining()) {
+			bucket.put((byte) 0);
+		}
+		return position;
+	}
+
+	private boolean isEmpty(int offset) {
+		return bucket.getInt(offset + 8) == 0 && bucket.getInt(offset + 12) == 0;
+	}
+
+}
@@ -0,0 +1,162 @@
+package student_player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import pentago_swap.PentagoBoardState;
+import pentago_swap.PentagoMove;
+
+/**
+ * Lazy SMP: a main thread and numThreads - 1 helper threads run the same iterative
+ * deepening search of the root and share the transposition table. Every other
+ * helper starts one ply deeper, so that the threads do not all search the same
+ * tree in step; the entries they store let the main thread skip work. Only the
+ * main thread's move is played, and the helpers are stopped as soon as it is
+ * found.
+ */
+public class LazySmpSearch {
+
+	private final int numThreads;
+	private final ExecutorService helpers;
+
+	// statistics of the last search
+	private long nodeCount;
+	private int completedDepth;
+	private int score;
+
+	/**
+	 * @param numThreads number of search threads, including the calling thread
+	 */
+	public LazySmpSearch(int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+		if (this.numThreads > 1) {
+			helpers = Executors.newFixedThreadPool(this.numThreads - 1, runnable -> {
+				Thread thread = new Thread(runnable, "search-helper");
+				// the client exits when the game is over, whatever the helpers do
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			helpers = null;
+		}
+	}
+
+	/**
+	 * Searches until the deadline or SearchConfig.MAX_DEPTH, then cancels the
+	 * deadline to stop the helpers.
+	 * 
+	 * @return the next best move for the student player
+	 */
+	public PentagoMove search(PentagoBoardState boardState, int studentPlayerID, Deadline deadline,
+			TranspositionTable transpositionTable) {
+		return search(boardState, studentPlayerID, deadline, transpositionTable, SearchConfig.MAX_DEPTH);
+	}
+
+	/**
+	 * Searches until the deadline or the given depth, then cancels the deadline to
+	 * stop the helpers.
+	 * 
+	 * @return the next best move for the student player
+	 */
+	public PentagoMove search(PentagoBoardState boardState, int studentPlayerID, Deadline deadline,
+			TranspositionTable transpositionTable, int maxDepth) {
+		transpositionTable.newSearch();
+
+		List<SearchContext> contexts = new ArrayList<>();
+		List<Future<PentagoMove>> futures = new ArrayList<>();
+		for (int i = 1; i < numThreads; i++) {
+			SearchContext context = new SearchContext(deadline, transpositionTable);
+			context.setHelper(true);
+			context.setFirstDepth(1 + i % 2);
+			context.setMaxDepth(maxDepth);
+			contexts.add(context);
+			Node root = new Node((PentagoBoardState) boardState.clone(), studentPlayerID);
+			futures.add(helpers.submit(() -> root.getNextMove(context)));
+		}
+
+		SearchContext mainContext = new SearchContext(deadline, transpositionTable);
+		mainContext.setMaxDepth(maxDepth);
+		contexts.add(mainContext);
+		PentagoMove move;
+		try {
+			move = new Node(boardState, studentPlayerID).getNextMove(mainContext);
+		} finally {
+			deadline.cancel();
+			awaitHelpers(futures);
+		}
+
+		nodeCount = 0;
+		for (SearchContext context : contexts) {
+			nodeCount += context.getNodeCount();
+		}
+		completedDepth = mainContext.getCompletedDepth();
+		score = mainContext.getCompletedScore();
+		if (SearchConfig.VERBOSE) {
+			MoveOrdering ordering = mainContext.getMoveOrdering();
+			System.out.println(String.format(
+					"%s with %d thread(s): depth %d in %d ms, %d nodes, %d cutoffs, %.1f%% by the first move",
+					SearchConfig.ALGORITHM, numThreads, completedDepth, deadline.getElapsedMillis(), nodeCount,
+					ordering.getCutoffs(), 100 * ordering.getFirstMoveCutoffRate()));
+			System.out.println(String.format("%d null move cutoffs, %d reduced moves, %d ProbCuts",
+					mainContext.getNullMoveCutoffs(), mainContext.getReductions(), mainContext.getProbCuts()));
+		}
+		return move;
+	}
+
+	private static void awaitHelpers(List<Future<PentagoMove>> futures) {
+		boolean interrupted = false;
+		for (Future<PentagoMove> future : futures) {
+			while (true) {
+				try {
+					future.get();
+					break;
+				} catch (InterruptedException e) {
+					// the helpers stop at their next node, wait for them anyway
+					interrupted = true;
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Search helper failed", e.getCause());
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return the number of nodes visited by all threads in the last search
+	 */
+	public long getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return the depth of the deepest iteration completed by the main thread in
+	 *         the last search
+	 */
+	public int getCompletedDepth() {
+		return completedDepth;
+	}
+
+	/**
+	 * @return the score of the move found in the last search, in thousandths for the
+	 *         student player
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Stops the helper threads once they are idle.
+	 */
+	public void shutdown() {
+		if (helpers != null) {
+			helpers.shutdown();
+		}
+	}
+
+}
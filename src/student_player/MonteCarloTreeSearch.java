@@ -0,0 +1,341 @@
+package student_player;
+
+import boardgame.Board;
+import pentago_swap.PentagoBoardState;
+import pentago_swap.PentagoMove;
+
+/**
+ * Monte Carlo tree search with UCT selection. Every iteration walks down the tree
+ * by the UCT formula, expands the leaf it reaches if the leaf was visited before,
+ * plays the game out with a RandomPlayout and adds the result to every node on
+ * the path. The move played is the most visited child of the root.
+ *
+ * The nodes live in preallocated primitive arrays indexed by node number, so a
+ * tree of millions of nodes costs no garbage collection. The children of a node are
+ * allocated together, as a block of consecutive numbers. When the arena is full,
+ * leaves are no longer expanded and the search goes on with playouts only.
+ *
+ * With tree reuse, the next search starts from the child or grandchild of the
+ * last root whose position is the new one, e.g. the subtree under the move played
+ * and the opponent's reply, compacted to the front of the arena. A reused root keeps its
+ * children, one per distinct board rather than one per symmetry class.
+ */
+public class MonteCarloTreeSearch {
+
+	private static final int ROOT = TreeReuse.ROOT;
+	private static final int NOT_EXPANDED = TreeReuse.NOT_EXPANDED;
+
+	// longest path from the root: one node per empty cell, plus the root
+	private static final int MAX_PATH = PentagoBoardState.BOARD_SIZE * PentagoBoardState.BOARD_SIZE + 1;
+
+	private final int capacity;
+	private final double exploration;
+	private final RandomPlayout playout;
+	private final boolean reuseTree;
+	// whether a new root has one child per symmetry class rather than per board
+	private boolean symmetricRoot = true;
+
+	// visit count of each node
+	private final int[] visits;
+	// sum of the playout results from the point of view of the player who made the
+	// move leading to the node: 1 for a win, 0.5 for a draw, 0 for a loss
+	private final float[] wins;
+	// number of the first child, or NOT_EXPANDED
+	private final int[] firstChild;
+	private final short[] numChildren;
+	// code of the move leading to the node, as an unsigned byte
+	private final byte[] move;
+	private int size;
+	private final Arena arena = new Arena();
+
+	private final int[] path = new int[MAX_PATH];
+	private final int[] moveBuffer = new int[PentagoMove.NUM_CODES];
+
+	// position of the root of the last tree, with tree reuse
+	private PentagoBoardState rootState;
+
+	// statistics of the last search
+	private long playouts;
+	private int reusedNodes;
+
+	/**
+	 * @param capacity       number of nodes of the arena
+	 * @param exploration    exploration constant of the UCT formula
+	 * @param guidedPlayouts whether playouts take immediate wins instead of random
+	 *                       moves
+	 * @param seed           non-zero seed of the playouts' random generator
+	 * @param reuseTree      whether a search starts from the subtree of the last
+	 *                       one reaching its position
+	 */
+	public MonteCarloTreeSearch(int capacity, double exploration, boolean guidedPlayouts, long seed,
+			boolean reuseTree) {
+		this.capacity = capacity;
+		this.exploration = exploration;
+		this.playout = new RandomPlayout(guidedPlayouts, seed);
+		this.reuseTree = reuseTree;
+		visits = new int[capacity];
+		wins = new float[capacity];
+		firstChild = new int[capacity];
+		numChildren = new short[capacity];
+		move = new byte[capacity];
+	}
+
+	/**
+	 * Searches from the given position until the deadline.
+	 *
+	 * @return the most visited move at the root
+	 */
+	public PentagoMove search(PentagoBoardState boardState, Deadline deadline) {
+		symmetricRoot = true;
+		run(boardState, deadline);
+		int best = getMostVisitedChild(ROOT);
+		if (SearchConfig.VERBOSE) {
+			System.out.println(String.format(
+					"MCTS: %d playouts in %d ms, %d nodes (%d reused), best move won %.1f%% of %d", playouts,
+					deadline.getElapsedMillis(), size, reusedNodes, 100.0 * wins[best] / visits[best], visits[best]));
+		}
+		return PentagoMove.fromCode(getMove(best), boardState.getTurnPlayer());
+	}
+
+	/**
+	 * Grows the tree from a position where the opponent is to move until the
+	 * deadline, so that the next search can reuse the subtree of the opponent's
+	 * reply. The root has a child for every distinct reply, not one per symmetry
+	 * class, since the reply actually played must be found among them.
+	 */
+	public void ponder(PentagoBoardState boardState, Deadline deadline) {
+		symmetricRoot = false;
+		run(boardState, deadline);
+	}
+
+	/**
+	 * @return true if the tree is reused, so that pondering is worthwhile
+	 */
+	public boolean canPonder() {
+		return reuseTree;
+	}
+
+	/**
+	 * Grows a tree from the given position until the deadline, at least one
+	 * iteration long so that the root has a visited child. The tree is new unless
+	 * tree reuse finds the position in the last one.
+	 */
+	void run(PentagoBoardState boardState, Deadline deadline) {
+		playouts = 0;
+		reusedNodes = 0;
+		if (reuseTree && reuseSubtree(boardState)) {
+			reusedNodes = size;
+		} else {
+			size = 0;
+			newNode(TranspositionTable.NO_MOVE);
+		}
+		if (firstChild[ROOT] == NOT_EXPANDED) {
+			expand(ROOT, boardState);
+		}
+		if (reuseTree) {
+			rootState = (PentagoBoardState) boardState.clone();
+		}
+		do {
+			iterate(boardState);
+			playouts++;
+		} while (!deadline.hasExpired());
+	}
+
+	/**
+	 * Reads the children of the root, in the order of getSymmetryReducedMoves.
+	 *
+	 * @param codes  receives the move codes
+	 * @param counts receives the visit counts
+	 * @return the number of children
+	 */
+	int getRootChildren(int[] codes, int[] counts) {
+		int first = firstChild[ROOT];
+		int count = numChildren[ROOT];
+		for (int i = 0; i < count; i++) {
+			codes[i] = getMove(first + i);
+			counts[i] = visits[first + i];
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of playouts of the last search
+	 */
+	public long getPlayouts() {
+		return playouts;
+	}
+
+	/**
+	 * @return the number of nodes of the tree of the last search
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the number of nodes the last search took over from the one before
+	 */
+	public int getReusedNodes() {
+		return reusedNodes;
+	}
+
+	/**
+	 * Looks for the given position one or two plies below the root of the last tree
+	 * and makes its node the root.
+	 *
+	 * @return false if the position is not in the tree
+	 */
+	private boolean reuseSubtree(PentagoBoardState boardState) {
+		int node = TreeReuse.findSubtree(arena, rootState, boardState);
+		if (node == TreeReuse.NOT_FOUND) {
+			return false;
+		}
+		size = TreeReuse.compact(arena, node);
+		return true;
+	}
+
+	/**
+	 * The node arrays, for the tree reuse.
+	 */
+	private class Arena implements TreeReuse.Arena {
+
+		@Override
+		public int getFirstChild(int node) {
+			return firstChild[node];
+		}
+
+		@Override
+		public void setFirstChild(int node, int first) {
+			firstChild[node] = first;
+		}
+
+		@Override
+		public int getNumChildren(int node) {
+			return numChildren[node];
+		}
+
+		@Override
+		public int getMove(int node) {
+			return MonteCarloTreeSearch.this.getMove(node);
+		}
+
+		@Override
+		public void copyNodes(int from, int to, int count) {
+			System.arraycopy(visits, from, visits, to, count);
+			System.arraycopy(wins, from, wins, to, count);
+			System.arraycopy(firstChild, from, firstChild, to, count);
+			System.arraycopy(numChildren, from, numChildren, to, count);
+			System.arraycopy(move, from, move, to, count);
+		}
+
+	}
+
+	private void iterate(PentagoBoardState rootState) {
+		PentagoBoardState state = (PentagoBoardState) rootState.clone();
+		int node = ROOT;
+		int length = 0;
+		path[length++] = node;
+
+		// selection
+		while (firstChild[node] != NOT_EXPANDED && state.getWinner() == Board.NOBODY) {
+			node = selectChild(node);
+			state.doMove(getMove(node));
+			path[length++] = node;
+		}
+
+		// expansion of a leaf visited before, whose first child is played out
+		if (state.getWinner() == Board.NOBODY && visits[node] > 0 && expand(node, state)) {
+			node = firstChild[node] + playout.nextInt(numChildren[node]);
+			state.doMove(getMove(node));
+			path[length++] = node;
+		}
+
+		backpropagate(length, rootState.getTurnPlayer(), playout.play(state));
+	}
+
+	/**
+	 * @return the child with the highest UCT value, or the first child never visited
+	 */
+	private int selectChild(int node) {
+		int first = firstChild[node];
+		int last = first + numChildren[node];
+		double logVisits = Math.log(visits[node]);
+		int best = first;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (int child = first; child < last; child++) {
+			int n = visits[child];
+			if (n == 0) {
+				return child;
+			}
+			double value = wins[child] / n + exploration * Math.sqrt(logVisits / n);
+			if (value > bestValue) {
+				bestValue = value;
+				best = child;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Allocates the children of a node: the distinct legal moves, and at the root of
+	 * a search only one move per symmetry class.
+	 *
+	 * @return false if the arena has no room for them
+	 */
+	private boolean expand(int node, PentagoBoardState state) {
+		int count = (node == ROOT && symmetricRoot) ? state.getSymmetryReducedMovesInto(moveBuffer)
+				: state.getDistinctLegalMovesInto(moveBuffer);
+		if (size + count > capacity) {
+			return false;
+		}
+		firstChild[node] = size;
+		numChildren[node] = (short) count;
+		for (int i = 0; i < count; i++) {
+			newNode(moveBuffer[i]);
+		}
+		return true;
+	}
+
+	private int newNode(int moveCode) {
+		int node = size++;
+		visits[node] = 0;
+		wins[node] = 0;
+		firstChild[node] = NOT_EXPANDED;
+		numChildren[node] = 0;
+		move[node] = (byte) moveCode;
+		return node;
+	}
+
+	private int getMove(int node) {
+		return move[node] & 0xFF;
+	}
+
+	/**
+	 * Adds the result of a playout to the nodes on the path; the node at depth d was
+	 * reached by a move of the root player if d is odd.
+	 */
+	private void backpropagate(int length, int rootPlayer, int winner) {
+		for (int depth = 0; depth < length; depth++) {
+			int node = path[depth];
+			int mover = (depth % 2 == 1) ? rootPlayer : 1 - rootPlayer;
+			visits[node]++;
+			if (winner == mover) {
+				wins[node] += 1;
+			} else if (winner == Board.DRAW) {
+				wins[node] += 0.5f;
+			}
+		}
+	}
+
+	private int getMostVisitedChild(int node) {
+		int first = firstChild[node];
+		int best = first;
+		for (int child = first + 1; child < first + numChildren[node]; child++) {
+			if (visits[child] > visits[best]) {
+				best = child;
+			}
+		}
+		return best;
+	}
+
+}
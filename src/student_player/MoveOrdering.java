@@ -0,0 +1,143 @@
+package student_player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import pentago_swap.PentagoBoardState;
+import pentago_swap.PentagoMove;
+
+/**
+ * Orders the moves of a node so that the one most likely to cause a cutoff is
+ * searched first: the transposition table move, then moves winning on the spot,
+ * then moves blocking a cell where the opponent could complete five in a row, then
+ * the killer moves of the ply, then the rest by history score.
+ *
+ * Killers are the last two moves which caused a cutoff at a ply; the history score
+ * of a move code grows with the square of the remaining depth each time the move
+ * causes a cutoff. Both are kept for one search, and are not thread-safe.
+ */
+public class MoveOrdering {
+
+	private static final int HASH_MOVE_SCORE = 1 << 30;
+	private static final int WINNING_MOVE_SCORE = 1 << 29;
+	private static final int BLOCKING_MOVE_SCORE = 1 << 28;
+	private static final int KILLER_MOVE_SCORE = 1 << 27;
+	// history scores stay below the killer scores
+	private static final int MAX_HISTORY_SCORE = 1 << 26;
+
+	private static final int NUM_KILLERS = 2;
+	// a search is never deeper than the number of cells
+	private static final int MAX_PLY = PentagoBoardState.BOARD_SIZE * PentagoBoardState.BOARD_SIZE + 1;
+
+	// low bits of a sort key, the index of the move in the generated list
+	private static final int INDEX_BITS = 8;
+
+	private final int[][] killers = new int[MAX_PLY][NUM_KILLERS];
+	private final int[][] history = new int[2][PentagoMove.NUM_CODES];
+
+	private long cutoffs;
+	private long firstMoveCutoffs;
+
+	public MoveOrdering() {
+		for (int[] plyKillers : killers) {
+			Arrays.fill(plyKillers, TranspositionTable.NO_MOVE);
+		}
+	}
+
+	/**
+	 * @param boardState the board state of the node
+	 * @param moves      the legal moves of the node
+	 * @param ply        the distance of the node from the root
+	 * @param hashMove   the code of the best move stored for the node, or
+	 *                   TranspositionTable.NO_MOVE
+	 * @return the moves in the order they should be searched; moves with the same
+	 *         score keep their generated order
+	 */
+	public List<PentagoMove> order(PentagoBoardState boardState, List<PentagoMove> moves, int ply, int hashMove) {
+		int player = boardState.getTurnPlayer();
+		// only moves on the player's own threat cells can win
+		long ownThreats = boardState.getThreatCells(player);
+		long opponentThreats = boardState.getThreatCells(1 - player);
+		int[] plyKillers = killers[ply];
+		int[] playerHistory = history[player];
+
+		int n = moves.size();
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			int code = moves.get(i).getCode();
+			long cell = 1L << PentagoMove.getCell(code);
+			int score;
+			if (code == hashMove) {
+				score = HASH_MOVE_SCORE;
+			} else if ((ownThreats & cell) != 0 && boardState.isWinningMove(code)) {
+				score = WINNING_MOVE_SCORE;
+			} else if ((opponentThreats & cell) != 0) {
+				score = BLOCKING_MOVE_SCORE;
+			} else if (code == plyKillers[0]) {
+				score = KILLER_MOVE_SCORE;
+			} else if (code == plyKillers[1]) {
+				score = KILLER_MOVE_SCORE - 1;
+			} else {
+				score = playerHistory[code];
+			}
+			// sorting ascending puts the best score last, and among equal scores the
+			// earliest generated move
+			keys[i] = ((long) score << INDEX_BITS) | (n - 1 - i);
+		}
+		Arrays.sort(keys);
+
+		List<PentagoMove> ordered = new ArrayList<>(n);
+		for (int i = n - 1; i >= 0; i--) {
+			ordered.add(moves.get(n - 1 - (int) (keys[i] & ((1 << INDEX_BITS) - 1))));
+		}
+		return ordered;
+	}
+
+	/**
+	 * Records a move which caused a cutoff.
+	 *
+	 * @param player         the player who played the move
+	 * @param ply            the distance from the root of the node the move was
+	 *                       played from
+	 * @param code           the code of the move
+	 * @param remainingDepth the depth searched below the node
+	 * @param moveIndex      the position of the move in the search order
+	 */
+	public void recordCutoff(int player, int ply, int code, int remainingDepth, int moveIndex) {
+		cutoffs++;
+		if (moveIndex == 0) {
+			firstMoveCutoffs++;
+		}
+
+		int[] plyKillers = killers[ply];
+		if (plyKillers[0] != code) {
+			plyKillers[1] = plyKillers[0];
+			plyKillers[0] = code;
+		}
+
+		int[] playerHistory = history[player];
+		playerHistory[code] += remainingDepth * remainingDepth;
+		if (playerHistory[code] >= MAX_HISTORY_SCORE) {
+			for (int i = 0; i < playerHistory.length; i++) {
+				playerHistory[i] /= 2;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of cutoffs recorded
+	 */
+	public long getCutoffs() {
+		return cutoffs;
+	}
+
+	/**
+	 * @return the fraction of cutoffs caused by the first move searched, 0 if there
+	 *         were none
+	 */
+	public double getFirstMoveCutoffRate() {
+		return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+	}
+
+}
@@ -1,5 +1,6 @@
 package student_player;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -11,20 +12,72 @@ public class Node implements Iterable<Node> {
 
 	private static final PentagoHeuristic HEURISTIC = getHeuristic();
 
+	// the search uses fixed-point scores, the score in [0, 1] times SCORE_SCALE, so
+	// that null windows (v, v + 1) are well defined; heuristic scores are multiples
+	// of 0.005, so the scale keeps them exact
+	static final int SCORE_SCALE = 1000;
+	static final int LOSS_SCORE = 0;
+	static final int WIN_SCORE = SCORE_SCALE;
+
+	// bounds of a fully open window, outside every score
+	private static final int MIN_BOUND = LOSS_SCORE - 1;
+	private static final int MAX_BOUND = WIN_SCORE + 1;
+
+	// fewest empty cells of a null move; turns are counted by moves, not pieces, so
+	// closer to the end a pass would end the game early with cells left empty
+	private static final int NULL_MOVE_MIN_EMPTY_CELLS = 12;
+	// least remaining depth of a node whose late moves are reduced
+	private static final int LMR_MIN_DEPTH = 3;
+
 	private final PentagoMove previousMove;
 	private final PentagoBoardState boardState;
 	private final int studentPlayerID;
+	// the root of a search, whose symmetric moves are searched once
+	private final boolean root;
+
+	// generated when the node is first expanded, leaves never need them
+	private List<PentagoMove> legalMoves;
+
+	// set on the root for the duration of a search and shared with its children
+	private SearchContext context;
 
-	private final List<PentagoMove> legalMoves;
-	private final int depthLimit;
+	// distance from the root of the search
+	private int ply;
 
+	// best move stored in the transposition table for this node, searched first
+	private int hashMove = TranspositionTable.NO_MOVE;
+
+	// nodes the quiescence search of this leaf may still visit
+	private int quiescenceBudget;
+
+	// whether this node was reached by passing, so that it does not pass again
+	private boolean afterNullMove;
+
+	// set while this node is searched at reduced depth by ProbCut, whose result must
+	// not replace its entry of the full depth in the transposition table
+	private boolean probCutSearch;
+
+	/**
+	 * Creates the root of a search.
+	 */
+	public Node(PentagoBoardState boardState, int studentPlayerID) {
+		this(null, boardState, studentPlayerID, true);
+	}
+
+	/**
+	 * Creates a node below the root of a search.
+	 * 
+	 * @param previousMove the move leading to this node, or null after a null move
+	 */
 	public Node(PentagoMove previousMove, PentagoBoardState boardState, int studentPlayerID) {
+		this(previousMove, boardState, studentPlayerID, false);
+	}
+
+	private Node(PentagoMove previousMove, PentagoBoardState boardState, int studentPlayerID, boolean root) {
 		this.previousMove = previousMove;
 		this.boardState = boardState;
 		this.studentPlayerID = studentPlayerID;
-
-		legalMoves = boardState.getAllLegalMoves();
-		depthLimit = calculateDepthLimit(legalMoves.size());
+		this.root = root;
 	}
 
 	private static PentagoHeuristic getHeuristic() {
@@ -34,18 +87,6 @@ public class Node implements Iterable<Node> {
 		return heuristic;
 	}
 
-	private static int calculateDepthLimit(int numLegalMoves) {
-		if (numLegalMoves <= 4 * 6) {
-			// 4 or fewer pieces left to play
-			return 4;
-		}
-		if (numLegalMoves <= 10 * 6) {
-			// 10 or fewer pieces left to play
-			return 3;
-		}
-		return 2;
-	}
-
 	/**
 	 * @return the board state associated with this node
 	 */
@@ -78,6 +119,19 @@ public class Node implements Iterable<Node> {
 		return (winner == studentPlayerID) ? 1 : 0;
 	}
 
+	/**
+	 * @return the score of the node in search units, getScore() times SCORE_SCALE;
+	 *         only an ended game scores LOSS_SCORE or WIN_SCORE, a heuristic score
+	 *         is kept strictly between them, so that a decided score is a proof
+	 */
+	int getSearchScore() {
+		int score = (int) Math.round(getScore() * SCORE_SCALE);
+		if (isTerminal()) {
+			return score;
+		}
+		return Math.max(LOSS_SCORE + 1, Math.min(WIN_SCORE - 1, score));
+	}
+
 	/**
 	 * @return the move that generated the board state associated with this node
 	 */
@@ -86,63 +140,522 @@ public class Node implements Iterable<Node> {
 	}
 
 	/**
+	 * @return the legal moves of this node; moves leading to the same board are
+	 *         searched once, and at the root also moves leading to rotations or
+	 *         reflections of the same board
+	 */
+	private List<PentagoMove> getLegalMoves() {
+		if (legalMoves == null) {
+			legalMoves = root ? boardState.getSymmetryReducedMoves()
+					: boardState.getDistinctLegalMoves();
+		}
+		return legalMoves;
+	}
+
+	/**
+	 * Expands this node for a search which keeps its own state instead of a
+	 * SearchContext. The children do not share anything with each other, so they
+	 * can be searched by different threads.
+	 * 
+	 * @param ordering  the move ordering of the children
+	 * @param firstMove the code of the move to search first, or
+	 *                  TranspositionTable.NO_MOVE
+	 * @return the children of this node, in search order
+	 */
+	List<Node> getChildren(MoveOrdering ordering, int firstMove) {
+		List<PentagoMove> moves = ordering.order(boardState, getLegalMoves(), 0, firstMove);
+		List<Node> children = new ArrayList<>(moves.size());
+		for (PentagoMove move : moves) {
+			PentagoBoardState state = (PentagoBoardState) boardState.clone();
+			state.processMove(move);
+			children.add(new Node(move, state, studentPlayerID));
+		}
+		return children;
+	}
+
+	/**
+	 * Iterative deepening alpha-beta search: searches depth 1, 2, 3... until the
+	 * deadline and returns the best move of the deepest completed iteration. An
+	 * iteration which runs out of time is abandoned. With the PVS algorithm, every
+	 * iteration after the first starts with an aspiration window around the score of
+	 * the previous one.
+	 * 
+	 * The first and last depths come from the context. A helper search of a
+	 * multi-threaded search does not stop at the soft time limit, since it only
+	 * fills the shared transposition table until the main search is done. The
+	 * search stops early only at a proven win, never at a loss while time remains.
+	 * 
+	 * @param context the deadline, transposition table and depths of the search
 	 * @return the next best move for the student player
 	 */
-	public PentagoMove getNextMove() {
-		Pair<Node, Double> maxScore = alphaBetaSearch();
-		return maxScore.key.getPreviousMove();
+	public PentagoMove getNextMove(SearchContext context) {
+		this.context = context;
+		Deadline deadline = context.getDeadline();
+		PentagoMove bestMove = getLegalMoves().get(0);
+		int firstDepth = context.getFirstDepth();
+		int maxDepth = Math.min(boardState.getNumEmptyCells(), context.getMaxDepth());
+		int previousScore = 0;
+
+		for (int depth = firstDepth; depth <= maxDepth; depth++) {
+			Pair<Node, Integer> maxScore;
+			try {
+				if (SearchConfig.ALGORITHM == SearchConfig.Algorithm.PVS && depth > firstDepth) {
+					maxScore = aspirationSearch(depth, previousScore);
+				} else {
+					maxScore = alphaBetaSearch(depth);
+				}
+			} catch (Deadline.ExpiredException e) {
+				break;
+			}
+			bestMove = maxScore.key.getPreviousMove();
+			previousScore = maxScore.value;
+			context.setCompletedDepth(depth);
+			context.setCompletedScore(maxScore.value);
+
+			if (maxScore.value == WIN_SCORE) {
+				// only ended games score WIN_SCORE, so the win is forced
+				break;
+			}
+			if (!context.isHelper() && !deadline.canStartIteration()) {
+				break;
+			}
+
+			// search the best move first in the next iteration
+			hashMove = bestMove.getCode();
+		}
+		return bestMove;
+	}
+
+	private Pair<Node, Integer> alphaBetaSearch(int depthLimit) {
+		return maxScore(0, depthLimit, MIN_BOUND, MAX_BOUND);
 	}
 
-	private Pair<Node, Double> alphaBetaSearch() {
-		double alpha = Double.NEGATIVE_INFINITY;
-		double beta = Double.POSITIVE_INFINITY;
-		return maxScore(0, alpha, beta);
+	/**
+	 * Searches the root with a window of SearchConfig.ASPIRATION_WINDOW around the
+	 * expected score. If the score falls outside the window, that side of the window
+	 * is opened and the root searched again.
+	 */
+	private Pair<Node, Integer> aspirationSearch(int depthLimit, int expectedScore) {
+		int alpha = Math.max(MIN_BOUND, expectedScore - SearchConfig.ASPIRATION_WINDOW);
+		int beta = Math.min(MAX_BOUND, expectedScore + SearchConfig.ASPIRATION_WINDOW);
+		while (true) {
+			Pair<Node, Integer> maxScore = maxScore(0, depthLimit, alpha, beta);
+			if (maxScore.value <= alpha && alpha > MIN_BOUND) {
+				alpha = MIN_BOUND;
+			} else if (maxScore.value >= beta && beta < MAX_BOUND) {
+				beta = MAX_BOUND;
+			} else {
+				return maxScore;
+			}
+		}
 	}
 
-	private Pair<Node, Double> maxScore(int depth, double alpha, double beta) {
-		if (depth >= depthLimit || isTerminal()) {
-			return new Pair<>(this, getScore());
+	private Pair<Node, Integer> maxScore(int depth, int depthLimit, int alpha, int beta) {
+		context.getDeadline().check();
+		context.countNode();
+		Pair<Node, Integer> stored = probe(depth, depthLimit, alpha, beta);
+		if (stored != null) {
+			return stored;
+		}
+		if (isTerminal()) {
+			return evaluate();
+		}
+		if (depth >= depthLimit) {
+			return evaluateHorizon(alpha, beta);
+		}
+		if (canNullMove(depth, depthLimit) && getSearchScore() >= beta) {
+			int nullScore = getNullMoveChild().minScore(depth + 1, depthLimit - SearchConfig.NULL_MOVE_REDUCTION,
+					beta - 1, beta).value;
+			if (nullScore >= beta) {
+				context.countNullMoveCutoff();
+				return cutoff(depthLimit - depth, beta, TranspositionTable.LOWER_BOUND);
+			}
+		}
+		if (canProbCut(depth, depthLimit) && beta < WIN_SCORE) {
+			// a predicted cutoff at WIN_SCORE would pass for a proven win
+			int shallowBeta = Math.max(LOSS_SCORE + 1, getProbCutBound(beta));
+			if (shallowBeta <= WIN_SCORE
+					&& probCutScore(depth, depthLimit, shallowBeta - 1, shallowBeta) >= shallowBeta) {
+				context.countProbCut();
+				return cutoff(depthLimit - depth, beta, TranspositionTable.LOWER_BOUND);
+			}
 		}
 
-		Pair<Node, Double> maxScore = new Pair<>(null, Double.NEGATIVE_INFINITY);
+		int alphaOrig = alpha;
+		boolean reduce = canReduce(depth, depthLimit);
+		Pair<Node, Integer> maxScore = new Pair<>(null, MIN_BOUND);
+		int moveIndex = 0;
 		for (Node child : this) {
-			Pair<Node, Double> childScore = child.minScore(depth + 1, alpha, beta);
-			if (childScore.value > maxScore.value) {
-				maxScore.value = childScore.value;
+			int childScore = MAX_BOUND;
+			if (reduce && isReducible(child, moveIndex)) {
+				// a late move is most likely worse than alpha; searched one ply
+				// shallower, it is only searched again if it turns out not to be
+				context.countReduction();
+				childScore = child.minScore(depth + 1, depthLimit - 1, alpha, alpha + 1).value;
+			}
+			if (childScore <= alpha) {
+				// settled by the reduced search
+			} else if (moveIndex == 0 || SearchConfig.ALGORITHM != SearchConfig.Algorithm.PVS) {
+				childScore = child.minScore(depth + 1, depthLimit, alpha, beta).value;
+			} else {
+				// with good move ordering the later moves are worse: a null window
+				// proves it cheaply, and only a move which is not is searched again
+				childScore = child.minScore(depth + 1, depthLimit, alpha, alpha + 1).value;
+				if (childScore > alpha && childScore < beta) {
+					childScore = child.minScore(depth + 1, depthLimit, alpha, beta).value;
+				}
+			}
+			if (childScore > maxScore.value) {
+				maxScore.value = childScore;
 				maxScore.key = child;
 			}
 			if (maxScore.value > alpha) {
 				alpha = maxScore.value;
 			}
 			if (alpha >= beta) {
+				recordCutoff(child, depthLimit - depth, moveIndex);
 				break;
 			}
+			moveIndex++;
 		}
+		store(depthLimit - depth, maxScore, alphaOrig, beta);
 		return maxScore;
 	}
 
-	private Pair<Node, Double> minScore(int depth, double alpha, double beta) {
-		if (depth >= depthLimit || isTerminal()) {
-			return new Pair<>(this, getScore());
+	private Pair<Node, Integer> minScore(int depth, int depthLimit, int alpha, int beta) {
+		context.getDeadline().check();
+		context.countNode();
+		Pair<Node, Integer> stored = probe(depth, depthLimit, alpha, beta);
+		if (stored != null) {
+			return stored;
+		}
+		if (isTerminal()) {
+			return evaluate();
+		}
+		if (depth >= depthLimit) {
+			return evaluateHorizon(alpha, beta);
+		}
+		if (canNullMove(depth, depthLimit) && getSearchScore() <= alpha) {
+			int nullScore = getNullMoveChild().maxScore(depth + 1, depthLimit - SearchConfig.NULL_MOVE_REDUCTION,
+					alpha, alpha + 1).value;
+			if (nullScore <= alpha) {
+				context.countNullMoveCutoff();
+				return cutoff(depthLimit - depth, alpha, TranspositionTable.UPPER_BOUND);
+			}
+		}
+		if (canProbCut(depth, depthLimit) && alpha > LOSS_SCORE) {
+			// the model is for the side to move, here the opponent
+			int shallowAlpha = WIN_SCORE - Math.max(LOSS_SCORE + 1, getProbCutBound(WIN_SCORE - alpha));
+			if (shallowAlpha >= LOSS_SCORE
+					&& probCutScore(depth, depthLimit, shallowAlpha, shallowAlpha + 1) <= shallowAlpha) {
+				context.countProbCut();
+				return cutoff(depthLimit - depth, alpha, TranspositionTable.UPPER_BOUND);
+			}
 		}
 
-		Pair<Node, Double> minScore = new Pair<>(null, Double.POSITIVE_INFINITY);
+		int betaOrig = beta;
+		boolean reduce = canReduce(depth, depthLimit);
+		Pair<Node, Integer> minScore = new Pair<>(null, MAX_BOUND);
+		int moveIndex = 0;
 		for (Node child : this) {
-			Pair<Node, Double> childScore = child.maxScore(depth + 1, alpha, beta);
-			if (childScore.value < minScore.value) {
-				minScore.value = childScore.value;
+			int childScore = MIN_BOUND;
+			if (reduce && isReducible(child, moveIndex)) {
+				context.countReduction();
+				childScore = child.maxScore(depth + 1, depthLimit - 1, beta - 1, beta).value;
+			}
+			if (childScore >= beta) {
+				// settled by the reduced search
+			} else if (moveIndex == 0 || SearchConfig.ALGORITHM != SearchConfig.Algorithm.PVS) {
+				childScore = child.maxScore(depth + 1, depthLimit, alpha, beta).value;
+			} else {
+				childScore = child.maxScore(depth + 1, depthLimit, beta - 1, beta).value;
+				if (childScore < beta && childScore > alpha) {
+					childScore = child.maxScore(depth + 1, depthLimit, alpha, beta).value;
+				}
+			}
+			if (childScore < minScore.value) {
+				minScore.value = childScore;
 				minScore.key = child;
 			}
 			if (minScore.value < beta) {
 				beta = minScore.value;
 			}
 			if (alpha >= beta) {
+				recordCutoff(child, depthLimit - depth, moveIndex);
 				break;
 			}
+			moveIndex++;
 		}
+		store(depthLimit - depth, minScore, alpha, betaOrig);
 		return minScore;
 	}
 
+	/**
+	 * A null move is only tried below the root, not twice in a row, far enough from
+	 * the depth limit to leave a search after it, and early enough in the game. The
+	 * side to move must not face a threat: without a piece to block it, the pass
+	 * would nearly always lose, and the search after it would be wasted.
+	 */
+	private boolean canNullMove(int depth, int depthLimit) {
+		return SearchConfig.NULL_MOVE && depth > 0 && !afterNullMove
+				&& depthLimit - depth >= SearchConfig.NULL_MOVE_REDUCTION + 2
+				&& boardState.getNumEmptyCells() >= NULL_MOVE_MIN_EMPTY_CELLS
+				&& boardState.getThreatCells(1 - boardState.getTurnPlayer()) == 0;
+	}
+
+	/**
+	 * The null move passes only the placement of the side to move, which still swaps
+	 * two quadrants, as Pentago-swap has no real pass. A piece more never hurts its
+	 * owner, so every move with the same swap is at least as good as the pass, and a
+	 * pass reaching the bound proves the node reaches it; a pass of the whole turn
+	 * proves nothing when every swap hurts. The swap is the one of the stored best
+	 * move, or the first one.
+	 * 
+	 * @return a child of this node where the side to move only swapped
+	 */
+	private Node getNullMoveChild() {
+		PentagoBoardState state = (PentagoBoardState) boardState.clone();
+		state.doNullMove(hashMove == TranspositionTable.NO_MOVE ? 0 : hashMove % PentagoMove.NUM_SWAPS);
+		Node child = new Node(null, state, studentPlayerID);
+		child.context = context;
+		child.ply = ply + 1;
+		child.afterNullMove = true;
+		return child;
+	}
+
+	/**
+	 * Searches this node again at the ProbCut reduced depth, without storing the
+	 * result for this node in the transposition table.
+	 * 
+	 * @return the score of the shallow search for the (alpha, beta) window
+	 */
+	private int probCutScore(int depth, int depthLimit, int alpha, int beta) {
+		boolean nested = probCutSearch;
+		probCutSearch = true;
+		try {
+			int shallowLimit = depthLimit - SearchConfig.PROBCUT_REDUCTION;
+			boolean studentTurn = boardState.getTurnPlayer() == studentPlayerID;
+			return (studentTurn ? maxScore(depth, shallowLimit, alpha, beta) : minScore(depth, shallowLimit, alpha, beta)).value;
+		} finally {
+			probCutSearch = nested;
+		}
+	}
+
+	private boolean canProbCut(int depth, int depthLimit) {
+		return SearchConfig.PROBCUT && depth > 0 && depthLimit - depth > SearchConfig.PROBCUT_REDUCTION;
+	}
+
+	/**
+	 * @param beta the upper bound of the window for the side to move
+	 * @return the score of the ProbCut shallow search above which the deep score is
+	 *         predicted to reach beta, for the side to move
+	 */
+	private static int getProbCutBound(int beta) {
+		double bound = (beta + SearchConfig.PROBCUT_THRESHOLD * SearchConfig.PROBCUT_SIGMA
+				- SearchConfig.PROBCUT_OFFSET) / SearchConfig.PROBCUT_SLOPE;
+		return (int) Math.ceil(Math.min(bound, MAX_BOUND));
+	}
+
+	/**
+	 * Late moves are only reduced far enough from the depth limit, and not when the
+	 * side to move faces a threat, where the blocking moves are not ordered among
+	 * themselves.
+	 */
+	private boolean canReduce(int depth, int depthLimit) {
+		return SearchConfig.LMR && depthLimit - depth >= LMR_MIN_DEPTH
+				&& boardState.getThreatCells(1 - boardState.getTurnPlayer()) == 0;
+	}
+
+	/**
+	 * @return true if the child is late in the move ordering and its move does not
+	 *         threaten to win, which must be answered and so is searched fully
+	 */
+	private boolean isReducible(Node child, int moveIndex) {
+		return moveIndex >= SearchConfig.LMR_FULL_DEPTH_MOVES && !child.isTerminal()
+				&& child.boardState.getThreatCells(boardState.getTurnPlayer()) == 0;
+	}
+
+	/**
+	 * Stores the bound of a node cut off without searching its moves, keeping the
+	 * best move of the transposition table.
+	 * 
+	 * @return the bound as the score of this node
+	 */
+	private Pair<Node, Integer> cutoff(int remainingDepth, int score, int bound) {
+		if (!probCutSearch) {
+			context.getTranspositionTable().store(boardState.getHash(), remainingDepth, bound, score, hashMove);
+		}
+		return new Pair<>(this, score);
+	}
+
+	/**
+	 * Looks this node up in the transposition table, and remembers the stored best
+	 * move to search it first.
+	 * 
+	 * @return the score stored in the transposition table if it was searched at
+	 *         least as deep and settles this node for the (alpha, beta) window,
+	 *         otherwise null; the root is always searched, since it needs a move
+	 */
+	private Pair<Node, Integer> probe(int depth, int depthLimit, int alpha, int beta) {
+		if (depth == 0) {
+			return null;
+		}
+		long entry = context.getTranspositionTable().probe(boardState.getHash());
+		if (entry == 0) {
+			return null;
+		}
+		hashMove = TranspositionTable.getMoveCode(entry);
+		if (TranspositionTable.getDepth(entry) < depthLimit - depth) {
+			return null;
+		}
+		int score = TranspositionTable.getScore(entry);
+		int bound = TranspositionTable.getBound(entry);
+		if (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+				|| (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+			return new Pair<>(this, score);
+		}
+		return null;
+	}
+
+	/**
+	 * @return the score of a leaf, which is also stored in the transposition table
+	 */
+	private Pair<Node, Integer> evaluate() {
+		int score = getSearchScore();
+		int depth = isTerminal() ? TranspositionTable.TERMINAL_DEPTH : 0;
+		context.getTranspositionTable().store(boardState.getHash(), depth, TranspositionTable.EXACT, score,
+				TranspositionTable.NO_MOVE);
+		return new Pair<>(this, score);
+	}
+
+	/**
+	 * @return the score of a leaf at the depth limit, settled by a quiescence search
+	 *         of the forcing moves, which is also stored in the transposition table
+	 */
+	private Pair<Node, Integer> evaluateHorizon(int alpha, int beta) {
+		if (SearchConfig.QUIESCENCE_NODES == 0) {
+			return evaluate();
+		}
+		quiescenceBudget = SearchConfig.QUIESCENCE_NODES;
+		int score = quiescence(alpha, beta);
+		if (quiescenceBudget == SearchConfig.QUIESCENCE_NODES) {
+			// no move was searched: the score is the static one or an immediate win
+			context.getTranspositionTable().store(boardState.getHash(), 0, TranspositionTable.EXACT, score,
+					TranspositionTable.NO_MOVE);
+		} else if (score <= alpha) {
+			// the quiescence search leaves out defenses by swapping, so its score is
+			// an estimate: only a cutoff of the window is stored, never an exact score
+			context.getTranspositionTable().store(boardState.getHash(), 0, TranspositionTable.UPPER_BOUND, score,
+					TranspositionTable.NO_MOVE);
+		} else if (score >= beta) {
+			context.getTranspositionTable().store(boardState.getHash(), 0, TranspositionTable.LOWER_BOUND, score,
+					TranspositionTable.NO_MOVE);
+		}
+		return new Pair<>(this, score);
+	}
+
+	/**
+	 * @return the quiescence score of this node for a fully open window, for
+	 *         QuiescenceCheck
+	 */
+	int getQuiescenceScore(SearchContext context) {
+		this.context = context;
+		quiescenceBudget = SearchConfig.QUIESCENCE_NODES;
+		return quiescence(MIN_BOUND, MAX_BOUND);
+	}
+
+	/**
+	 * Searches only the forcing moves below the depth limit: a player who can win at
+	 * once does, and a player whose opponent could complete five in a row on some
+	 * swap board must place a piece on one of the threatened cells, with any swap.
+	 * Other defenses, a swap breaking the line, are not searched, so a defender whose
+	 * blocks all lose is scored just short of a loss, not as a proven one. A position
+	 * without threats, or whose moves do not fit in the budget, is scored
+	 * statically. The moves are played in place on this node's board state.
+	 * 
+	 * @return the score for the (alpha, beta) window
+	 */
+	private int quiescence(int alpha, int beta) {
+		if (boardState.getWinner() != Board.NOBODY) {
+			return getSearchScore();
+		}
+		boolean studentTurn = boardState.getTurnPlayer() == studentPlayerID;
+		if (boardState.getWinningMoveCode() != PentagoMove.ILLEGAL_CODE) {
+			return studentTurn ? WIN_SCORE : LOSS_SCORE;
+		}
+		long threats = boardState.getThreatCells(1 - boardState.getTurnPlayer());
+		if (threats == 0) {
+			return getSearchScore();
+		}
+
+		int bestScore = studentTurn ? MIN_BOUND : MAX_BOUND;
+		for (; threats != 0; threats &= threats - 1) {
+			int cell = Long.numberOfTrailingZeros(threats);
+			for (int swap = 0; swap < PentagoMove.NUM_SWAPS; swap++) {
+				if (quiescenceBudget <= 0) {
+					// out of budget: the moves searched so far decide, and without
+					// any the static score stands
+					return (bestScore == MIN_BOUND || bestScore == MAX_BOUND) ? getSearchScore()
+							: getDefenseScore(bestScore, studentTurn);
+				}
+				context.getDeadline().check();
+				context.countNode();
+				quiescenceBudget--;
+				long undoToken = boardState.doMove(cell * PentagoMove.NUM_SWAPS + swap);
+				int score;
+				try {
+					score = quiescence(alpha, beta);
+				} finally {
+					boardState.undoMove(undoToken);
+				}
+				if (studentTurn) {
+					bestScore = Math.max(bestScore, score);
+					alpha = Math.max(alpha, score);
+				} else {
+					bestScore = Math.min(bestScore, score);
+					beta = Math.min(beta, score);
+				}
+				if (alpha >= beta) {
+					return getDefenseScore(bestScore, studentTurn);
+				}
+			}
+		}
+		return getDefenseScore(bestScore, studentTurn);
+	}
+
+	/**
+	 * @param bestScore   the best score of the blocks searched by the quiescence
+	 *                    search
+	 * @param studentTurn whether the student is the defender
+	 * @return the best score, or the score just short of a loss if every block
+	 *         loses, since a swap may still break the line
+	 */
+	private static int getDefenseScore(int bestScore, boolean studentTurn) {
+		if (studentTurn) {
+			return Math.max(bestScore, LOSS_SCORE + 1);
+		}
+		return Math.min(bestScore, WIN_SCORE - 1);
+	}
+
+	private void store(int remainingDepth, Pair<Node, Integer> score, int alpha, int beta) {
+		if (probCutSearch) {
+			return;
+		}
+		int bound = TranspositionTable.EXACT;
+		if (score.value <= alpha) {
+			bound = TranspositionTable.UPPER_BOUND;
+		} else if (score.value >= beta) {
+			bound = TranspositionTable.LOWER_BOUND;
+		}
+		int moveCode = score.key.getPreviousMove().getCode();
+		context.getTranspositionTable().store(boardState.getHash(), remainingDepth, bound, score.value, moveCode);
+	}
+
+	private void recordCutoff(Node child, int remainingDepth, int moveIndex) {
+		context.getMoveOrdering().recordCutoff(boardState.getTurnPlayer(), ply,
+				child.getPreviousMove().getCode(), remainingDepth, moveIndex);
+	}
+
 	@Override
 	public Iterator<Node> iterator() {
 		return new NodeIterator();
@@ -150,7 +663,8 @@ public class Node implements Iterable<Node> {
 
 	private class NodeIterator implements Iterator<Node> {
 
-		private final Iterator<PentagoMove> movesIter = legalMoves.iterator();
+		private final Iterator<PentagoMove> movesIter = context.getMoveOrdering()
+				.order(boardState, getLegalMoves(), ply, hashMove).iterator();
 
 		@Override
 		public boolean hasNext() {
@@ -162,7 +676,10 @@ public class Node implements Iterable<Node> {
 			PentagoMove move = movesIter.next();
 			PentagoBoardState state = (PentagoBoardState) boardState.clone();
 			state.processMove(move);
-			return new Node(move, state, studentPlayerID);
+			Node child = new Node(move, state, studentPlayerID);
+			child.context = context;
+			child.ply = ply + 1;
+			return child;
 		}
 
 	}
@@ -0,0 +1,494 @@
+package student_player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import boardgame.Board;
+import pentago_swap.PentagoBoardState;
+import pentago_swap.PentagoMove;
+
+/**
+ * Multi-threaded Monte Carlo tree search, in one of two modes.
+ *
+ * Tree parallelism: all threads grow one shared tree, whose visit counts and
+ * results are atomic. A thread going down a node adds a virtual loss to it, visits
+ * without a result, so the threads after it prefer other branches until its result
+ * comes back. A leaf is expanded by the first thread to claim it; the others treat
+ * it as a leaf until its children are published. Like MonteCarloTreeSearch, the
+ * shared tree can be reused by the next search.
+ *
+ * Root parallelism: every thread grows its own MonteCarloTreeSearch tree from the
+ * same position, with its own random generator, and the visit counts of the root
+ * children are added up at the end. These trees are never reused, since every
+ * tree must have the same root children.
+ *
+ * The calling thread is one of the search threads, and the others run on a pool of
+ * daemon threads kept between searches. In both modes, the move played is the most
+ * visited child of the root.
+ */
+public class ParallelMonteCarloTreeSearch {
+
+	/**
+	 * Ways of sharing the search between threads.
+	 */
+	public enum Mode {
+		/** one shared tree, with virtual loss */
+		TREE,
+		/** one tree per thread, merged at the root */
+		ROOT
+	}
+
+	private static final int ROOT = TreeReuse.ROOT;
+	private static final int NOT_EXPANDED = TreeReuse.NOT_EXPANDED;
+	// claimed by a thread which is allocating the children, or which found no room
+	private static final int EXPANDING = -2;
+
+	private static final int MAX_PATH = PentagoBoardState.BOARD_SIZE * PentagoBoardState.BOARD_SIZE + 1;
+
+	// results are counted in half points, so that a draw is a whole number
+	private static final int WIN_POINTS = 2;
+	private static final int DRAW_POINTS = 1;
+
+	private static final long SEED = 0x9E3779B97F4A7C15L;
+
+	private final Mode mode;
+	private final int numThreads;
+	private final double exploration;
+	private final boolean guidedPlayouts;
+	private final int virtualLoss;
+	private final boolean reuseTree;
+	private final ExecutorService helpers;
+
+	// shared tree of the TREE mode, see MonteCarloTreeSearch for the layout
+	private final int capacity;
+	private final AtomicIntegerArray visits;
+	private final AtomicIntegerArray points;
+	private final AtomicIntegerArray firstChild;
+	private final short[] numChildren;
+	private final byte[] move;
+	private final AtomicInteger size = new AtomicInteger();
+	private final Arena arena = new Arena();
+	// position of the root of the last shared tree, with tree reuse
+	private PentagoBoardState rootState;
+
+	// trees of the ROOT mode
+	private final MonteCarloTreeSearch[] trees;
+
+	// statistics of the last search
+	private long playouts;
+
+	/**
+	 * @param mode           tree or root parallelism
+	 * @param numThreads     number of search threads, including the calling thread
+	 * @param capacity       number of nodes, shared by the trees in ROOT mode
+	 * @param exploration    exploration constant of the UCT formula
+	 * @param guidedPlayouts whether playouts take immediate wins instead of random
+	 *                       moves
+	 * @param virtualLoss    visits added to a node while its result is pending, in
+	 *                       TREE mode; at least 1, the visit itself
+	 * @param reuseTree      whether a search in TREE mode starts from the subtree of
+	 *                       the last one reaching its position
+	 */
+	public ParallelMonteCarloTreeSearch(Mode mode, int numThreads, int capacity, double exploration,
+			boolean guidedPlayouts, int virtualLoss, boolean reuseTree) {
+		this.mode = mode;
+		this.numThreads = Math.max(1, numThreads);
+		this.exploration = exploration;
+		this.guidedPlayouts = guidedPlayouts;
+		this.virtualLoss = Math.max(1, virtualLoss);
+		this.reuseTree = reuseTree;
+
+		if (mode == Mode.TREE) {
+			this.capacity = capacity;
+			visits = new AtomicIntegerArray(capacity);
+			points = new AtomicIntegerArray(capacity);
+			firstChild = new AtomicIntegerArray(capacity);
+			numChildren = new short[capacity];
+			move = new byte[capacity];
+			trees = null;
+		} else {
+			this.capacity = 0;
+			visits = null;
+			points = null;
+			firstChild = null;
+			numChildren = null;
+			move = null;
+			trees = new MonteCarloTreeSearch[this.numThreads];
+			for (int i = 0; i < trees.length; i++) {
+				trees[i] = new MonteCarloTreeSearch(capacity / trees.length, exploration, guidedPlayouts,
+						SEED * (i + 1), false);
+			}
+		}
+
+		if (this.numThreads > 1) {
+			helpers = Executors.newFixedThreadPool(this.numThreads - 1, runnable -> {
+				Thread thread = new Thread(runnable, "mcts-helper");
+				// the client exits when the game is over, whatever the helpers do
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			helpers = null;
+		}
+	}
+
+	/**
+	 * Searches from the given position until the deadline.
+	 *
+	 * @return the most visited move at the root
+	 */
+	public PentagoMove search(PentagoBoardState boardState, Deadline deadline) {
+		grow(boardState, deadline, true);
+
+		int[] codes = new int[PentagoMove.NUM_CODES];
+		int[] counts = new int[PentagoMove.NUM_CODES];
+		int count = getRootChildren(codes, counts);
+		int best = 0;
+		for (int i = 1; i < count; i++) {
+			if (counts[i] > counts[best]) {
+				best = i;
+			}
+		}
+		if (SearchConfig.VERBOSE) {
+			System.out.println(String.format("MCTS %s with %d thread(s): %d playouts in %d ms, best move visited %d",
+					mode, numThreads, playouts, deadline.getElapsedMillis(), counts[best]));
+		}
+		return PentagoMove.fromCode(codes[best], boardState.getTurnPlayer());
+	}
+
+	/**
+	 * @return true if the shared tree is reused, so that pondering is worthwhile
+	 */
+	public boolean canPonder() {
+		return mode == Mode.TREE && reuseTree;
+	}
+
+	/**
+	 * Grows the shared tree from a position where the opponent is to move until the
+	 * deadline, so that the next search can reuse the subtree of the opponent's
+	 * reply. The root has a child for every distinct reply, not one per symmetry
+	 * class, since the reply actually played must be found among them.
+	 */
+	public void ponder(PentagoBoardState boardState, Deadline deadline) {
+		if (canPonder()) {
+			grow(boardState, deadline, false);
+		}
+	}
+
+	/**
+	 * Runs every thread from the given position until the deadline.
+	 *
+	 * @param symmetricRoot whether a new root has one child per symmetry class
+	 */
+	private void grow(PentagoBoardState boardState, Deadline deadline, boolean symmetricRoot) {
+		if (mode == Mode.TREE) {
+			if (!reuseTree || !reuseSubtree(boardState)) {
+				size.set(0);
+				newNode(TranspositionTable.NO_MOVE);
+			}
+			if (firstChild.get(ROOT) < 0) {
+				int[] codes = new int[PentagoMove.NUM_CODES];
+				int count = symmetricRoot ? boardState.getSymmetryReducedMovesInto(codes)
+						: boardState.getDistinctLegalMovesInto(codes);
+				expand(ROOT, count, codes);
+			}
+			if (reuseTree) {
+				rootState = (PentagoBoardState) boardState.clone();
+			}
+		}
+
+		List<Callable<Long>> workers = new ArrayList<>();
+		for (int i = 0; i < numThreads; i++) {
+			PentagoBoardState state = (PentagoBoardState) boardState.clone();
+			if (mode == Mode.TREE) {
+				TreeWorker worker = new TreeWorker(SEED * (i + 1));
+				workers.add(() -> worker.run(state, deadline));
+			} else {
+				MonteCarloTreeSearch tree = trees[i];
+				workers.add(() -> {
+					tree.run(state, deadline);
+					return tree.getPlayouts();
+				});
+			}
+		}
+
+		List<Future<Long>> futures = new ArrayList<>();
+		for (int i = 1; i < numThreads; i++) {
+			futures.add(helpers.submit(workers.get(i)));
+		}
+		try {
+			playouts = workers.get(0).call();
+		} catch (Exception e) {
+			throw new IllegalStateException("Search failed", e);
+		}
+		playouts += awaitHelpers(futures);
+	}
+
+	/**
+	 * @return the number of playouts of all threads in the last search
+	 */
+	public long getPlayouts() {
+		return playouts;
+	}
+
+	/**
+	 * Stops the helper threads once they are idle.
+	 */
+	public void shutdown() {
+		if (helpers != null) {
+			helpers.shutdown();
+		}
+	}
+
+	private static long awaitHelpers(List<Future<Long>> futures) {
+		long total = 0;
+		boolean interrupted = false;
+		for (Future<Long> future : futures) {
+			while (true) {
+				try {
+					total += future.get();
+					break;
+				} catch (InterruptedException e) {
+					// the helpers stop at the deadline, wait for them anyway
+					interrupted = true;
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Search helper failed", e.getCause());
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		return total;
+	}
+
+	/**
+	 * Reads the children of the root, adding up the visits of all trees in ROOT
+	 * mode; every tree has the same root children, in the same order.
+	 *
+	 * @return the number of children
+	 */
+	private int getRootChildren(int[] codes, int[] counts) {
+		if (mode == Mode.TREE) {
+			int first = firstChild.get(ROOT);
+			int count = numChildren[ROOT];
+			for (int i = 0; i < count; i++) {
+				codes[i] = move[first + i] & 0xFF;
+				counts[i] = visits.get(first + i);
+			}
+			return count;
+		}
+
+		int[] treeCounts = new int[PentagoMove.NUM_CODES];
+		int count = 0;
+		for (MonteCarloTreeSearch tree : trees) {
+			count = tree.getRootChildren(codes, treeCounts);
+			for (int i = 0; i < count; i++) {
+				counts[i] += treeCounts[i];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Looks for the given position one or two plies below the root of the last
+	 * shared tree and makes its node the root; see TreeReuse. Runs between searches,
+	 * while no worker uses the tree. A node left claimed for expansion by a full
+	 * arena can be expanded again.
+	 *
+	 * @return false if the position is not in the tree
+	 */
+	private boolean reuseSubtree(PentagoBoardState boardState) {
+		int node = TreeReuse.findSubtree(arena, rootState, boardState);
+		if (node == TreeReuse.NOT_FOUND) {
+			return false;
+		}
+		size.set(TreeReuse.compact(arena, node));
+		return true;
+	}
+
+	/**
+	 * The node arrays of the shared tree, for the tree reuse.
+	 */
+	private class Arena implements TreeReuse.Arena {
+
+		@Override
+		public int getFirstChild(int node) {
+			return firstChild.get(node);
+		}
+
+		@Override
+		public void setFirstChild(int node, int first) {
+			firstChild.set(node, first);
+		}
+
+		@Override
+		public int getNumChildren(int node) {
+			return numChildren[node];
+		}
+
+		@Override
+		public int getMove(int node) {
+			return move[node] & 0xFF;
+		}
+
+		@Override
+		public void copyNodes(int from, int to, int count) {
+			for (int i = 0; i < count; i++) {
+				visits.set(to + i, visits.get(from + i));
+				points.set(to + i, points.get(from + i));
+				firstChild.set(to + i, firstChild.get(from + i));
+			}
+			System.arraycopy(numChildren, from, numChildren, to, count);
+			System.arraycopy(move, from, move, to, count);
+		}
+
+	}
+
+	private void newNode(int moveCode) {
+		int node = size.getAndIncrement();
+		initNode(node, moveCode);
+	}
+
+	private void initNode(int node, int moveCode) {
+		visits.set(node, 0);
+		points.set(node, 0);
+		firstChild.set(node, NOT_EXPANDED);
+		numChildren[node] = 0;
+		move[node] = (byte) moveCode;
+	}
+
+	/**
+	 * Allocates and publishes the children of a node claimed for expansion.
+	 *
+	 * @return false if the arena has no room for them; the node stays claimed, so
+	 *         it remains a leaf
+	 */
+	private boolean expand(int node, int count, int[] codes) {
+		if (size.get() + count > capacity) {
+			return false;
+		}
+		int first = size.getAndAdd(count);
+		if (first + count > capacity) {
+			return false;
+		}
+		for (int i = 0; i < count; i++) {
+			initNode(first + i, codes[i]);
+		}
+		numChildren[node] = (short) count;
+		// the volatile write publishes the children to the other threads
+		firstChild.set(node, first);
+		return true;
+	}
+
+	/**
+	 * A thread of the TREE mode.
+	 */
+	private class TreeWorker {
+
+		private final RandomPlayout playout;
+		private final int[] path = new int[MAX_PATH];
+		private final int[] moveBuffer = new int[PentagoMove.NUM_CODES];
+
+		TreeWorker(long seed) {
+			playout = new RandomPlayout(guidedPlayouts, seed);
+		}
+
+		/**
+		 * @return the number of playouts
+		 */
+		long run(PentagoBoardState rootState, Deadline deadline) {
+			long count = 0;
+			do {
+				iterate(rootState);
+				count++;
+			} while (!deadline.hasExpired());
+			return count;
+		}
+
+		private void iterate(PentagoBoardState rootState) {
+			PentagoBoardState state = (PentagoBoardState) rootState.clone();
+			int node = ROOT;
+			int length = 0;
+			visit(node, length++);
+
+			// selection
+			while (firstChild.get(node) >= 0 && state.getWinner() == Board.NOBODY) {
+				node = selectChild(node);
+				state.doMove(move[node] & 0xFF);
+				visit(node, length++);
+			}
+
+			// expansion of a leaf visited before, by the thread claiming it
+			if (state.getWinner() == Board.NOBODY && visits.get(node) > virtualLoss
+					&& firstChild.compareAndSet(node, NOT_EXPANDED, EXPANDING)) {
+				int count = (node == ROOT) ? state.getSymmetryReducedMovesInto(moveBuffer)
+						: state.getDistinctLegalMovesInto(moveBuffer);
+				if (expand(node, count, moveBuffer)) {
+					node = firstChild.get(node) + playout.nextInt(count);
+					state.doMove(move[node] & 0xFF);
+					visit(node, length++);
+				}
+			}
+
+			backpropagate(length, rootState.getTurnPlayer(), playout.play(state));
+		}
+
+		/**
+		 * Adds a node to the path, with a virtual loss until its result is known.
+		 */
+		private void visit(int node, int depth) {
+			path[depth] = node;
+			visits.addAndGet(node, virtualLoss);
+		}
+
+		private int selectChild(int node) {
+			int first = firstChild.get(node);
+			int last = first + numChildren[node];
+			double logVisits = Math.log(visits.get(node));
+			int best = first;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			for (int child = first; child < last; child++) {
+				int n = visits.get(child);
+				if (n == 0) {
+					return child;
+				}
+				double value = points.get(child) / (double) (WIN_POINTS * n)
+						+ exploration * Math.sqrt(logVisits / n);
+				if (value > bestValue) {
+					bestValue = value;
+					best = child;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Replaces the virtual losses on the path by the result of the playout; the
+		 * node at depth d was reached by a move of the root player if d is odd.
+		 */
+		private void backpropagate(int length, int rootPlayer, int winner) {
+			for (int depth = 0; depth < length; depth++) {
+				int node = path[depth];
+				int mover = (depth % 2 == 1) ? rootPlayer : 1 - rootPlayer;
+				if (virtualLoss > 1) {
+					visits.addAndGet(node, 1 - virtualLoss);
+				}
+				if (winner == mover) {
+					points.addAndGet(node, WIN_POINTS);
+				} else if (winner == Board.DRAW) {
+					points.addAndGet(node, DRAW_POINTS);
+				}
+			}
+		}
+
+	}
+
+}
@@ -1,7 +1,5 @@
 package student_player;
 
-import java.util.List;
-
 import pentago_swap.PentagoBoardState;
 import pentago_swap.PentagoBoardState.Piece;
 
@@ -9,7 +7,8 @@ public class PentagoHeuristic3And2Empty extends PentagoHeuristicBase {
 
 	@Override
 	public double calculateScore(PentagoBoardState boardState, int studentPlayerID) {
-		initPieces(studentPlayerID);
+		Piece studentPiece = getPiece(studentPlayerID);
+		Piece opponentPiece = getPiece(1 - studentPlayerID);
 
 		double score;
 		if (boardState.getTurnPlayer() == studentPlayerID) {
@@ -24,10 +23,11 @@ public class PentagoHeuristic3And2Empty extends PentagoHeuristicBase {
 	}
 
 	private double calculateScore(PentagoBoardState boardState, Piece turnPiece, Piece nonturnPiece) {
-		List<Piece[][]> boards = getSwapBoards(boardState);
+		int boards = ALL_SWAP_BOARDS;
 
-		int countTurnPlayer = countConditionOnBoards(boards, turnPiece, Condition.THREE_AND_TWO_EMPTY);
-		int countNonturnPlayer = countConditionOnBoards(boards, nonturnPiece, Condition.THREE_AND_TWO_EMPTY);
+		int countTurnPlayer = countConditionOnBoards(boardState, boards, turnPiece, Condition.THREE_AND_TWO_EMPTY);
+		int countNonturnPlayer = countConditionOnBoards(boardState, boards, nonturnPiece,
+				Condition.THREE_AND_TWO_EMPTY);
 		return Math.max(0, Math.min(1, 0.5 + 0.01 * (countTurnPlayer - countNonturnPlayer)));
 	}
 
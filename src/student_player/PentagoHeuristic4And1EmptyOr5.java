@@ -1,7 +1,5 @@
 package student_player;
 
-import java.util.List;
-
 import pentago_swap.PentagoBoardState;
 import pentago_swap.PentagoBoardState.Piece;
 
@@ -9,7 +7,8 @@ public class PentagoHeuristic4And1EmptyOr5 extends PentagoHeuristicBase {
 
 	@Override
 	public double calculateScore(PentagoBoardState boardState, int studentPlayerID) {
-		initPieces(studentPlayerID);
+		Piece studentPiece = getPiece(studentPlayerID);
+		Piece opponentPiece = getPiece(1 - studentPlayerID);
 
 		double score;
 		if (boardState.getTurnPlayer() == studentPlayerID) {
@@ -25,20 +24,20 @@ public class PentagoHeuristic4And1EmptyOr5 extends PentagoHeuristicBase {
 
 	private double calculateScore(PentagoBoardState boardState, Piece turnPiece, Piece nonturnPiece) {
 		// swap boards which do not contain 5 non-turn pieces
-		List<Piece[][]> boards = getSwapBoardsWithExcludeCondition(boardState, nonturnPiece, Condition.FIVE);
-		if (boards.isEmpty()) {
+		int boards = getSwapBoardsWithExcludeCondition(boardState, nonturnPiece, Condition.FIVE);
+		if (boards == 0) {
 			// non-turn player wins on next move or draw
 			// all swap boards contain 5 non-turn pieces (row, column or diagonal)
 			return 0;
 		}
 
-		if (checkConditionOnBoards(boards, turnPiece, Condition.FOUR_AND_ONE_EMPTY_OR_FIVE)) {
+		if (checkConditionOnBoards(boardState, boards, turnPiece, Condition.FOUR_AND_ONE_EMPTY_OR_FIVE)) {
 			// turn player wins: found a swap board which contains 4 and 1 empty or 5 turn pieces
 			return 1;
 		}
 
 		boards = getSwapBoardsWithExcludeCondition(boardState, nonturnPiece, Condition.FOUR_AND_ONE_EMPTY_OR_FIVE);
-		if (boards.isEmpty()) {
+		if (boards == 0) {
 			// non-turn player wins on next move or draw
 			// all swap boards contain 4 and 1 empty or 5 non-turn pieces (row, column or diagonal)
 			return 0;
@@ -1,12 +1,11 @@
 package student_player;
 
-import static pentago_swap.PentagoBoardState.BOARD_SIZE;
-
-import java.util.ArrayList;
-import java.util.List;
+import static pentago_swap.PentagoQuadrantTables.LINES_PER_WORD;
+import static pentago_swap.PentagoQuadrantTables.LINE_COUNT_WORDS;
 
 import pentago_swap.PentagoBoardState;
 import pentago_swap.PentagoBoardState.Piece;
+import pentago_swap.PentagoQuadrantTables;
 
 public abstract class PentagoHeuristicBase implements PentagoHeuristic {
 
@@ -14,221 +13,40 @@ public abstract class PentagoHeuristicBase implements PentagoHeuristic {
 		THREE_AND_TWO_EMPTY, FOUR_AND_ONE_EMPTY, FOUR_AND_ONE_EMPTY_OR_FIVE, FIVE
 	}
 
-	protected Piece studentPiece;
-	protected Piece opponentPiece;
-
-	protected void initPieces(int studentPlayerID) {
-		if (studentPlayerID == 0) {
-			// student played first with white
-			studentPiece = Piece.WHITE;
-			// opponent played second with black
-			opponentPiece = Piece.BLACK;
-		} else {
-			// opponent played second with white
-			opponentPiece = Piece.WHITE;
-			// student played second with black
-			studentPiece = Piece.BLACK;
-		}
-	}
-
-	protected Piece[][] getBoard(PentagoBoardState boardState) {
-		Piece[][] board = new Piece[BOARD_SIZE][BOARD_SIZE];
-		for (int i = 0; i < BOARD_SIZE; i++) {
-			for (int j = 0; j < BOARD_SIZE; j++) {
-				board[i][j] = boardState.getPieceAt(i, j);
-			}
-		}
-		return board;
-	}
-
-	// top left, top right
-	protected Piece[][] getBoardSwapTopLeftTopRight(PentagoBoardState boardState) {
-		Piece[][] board = getBoard(boardState);
-		swap(board, 0, 0, 0, BOARD_SIZE / 2);
-		return board;
-	}
-
-	// top left, bottom left
-	protected Piece[][] getBoardSwapTopLeftBottomLeft(PentagoBoardState boardState) {
-		Piece[][] board = getBoard(boardState);
-		swap(board, 0, 0, BOARD_SIZE / 2, 0);
-		return board;
-	}
-
-	// top left, bottom right
-	protected Piece[][] getBoardSwapTopLeftBottomRight(PentagoBoardState boardState) {
-		Piece[][] board = getBoard(boardState);
-		swap(board, 0, 0, BOARD_SIZE / 2, BOARD_SIZE / 2);
-		return board;
-	}
-
-	// top right, bottom right
-	protected Piece[][] getBoardSwapTopRightBottomRight(PentagoBoardState boardState) {
-		Piece[][] board = getBoard(boardState);
-		swap(board, 0, BOARD_SIZE / 2, BOARD_SIZE / 2, BOARD_SIZE / 2);
-		return board;
-	}
-
-	// top right, bottom left
-	protected Piece[][] getBoardSwapTopRightBottomLeft(PentagoBoardState boardState) {
-		Piece[][] board = getBoard(boardState);
-		swap(board, 0, BOARD_SIZE / 2, BOARD_SIZE / 2, 0);
-		return board;
-	}
-
-	// bottom left, bottom right
-	protected Piece[][] getBoardSwapBottomLeftBottomRight(PentagoBoardState boardState) {
-		Piece[][] board = getBoard(boardState);
-		swap(board, 0, 0, BOARD_SIZE / 2, BOARD_SIZE / 2);
-		return board;
-	}
-
-	protected void swap(Piece[][] board, int i1, int j1, int i2, int j2) {
-		for (int i = 0; i < BOARD_SIZE / 2; i++) {
-			for (int j = 0; j < BOARD_SIZE / 2; j++) {
-				Piece p = board[i1 + i][j1 + j];
-				board[i1 + i][j1 + j] = board[i2 + i][j2 + j];
-				board[i2 + i][j2 + j] = p;
-			}
-		}
-	}
-
-	protected List<Piece[][]> getSwapBoards(PentagoBoardState boardState) {
-		Piece[][] board;
-		List<Piece[][]> boards = new ArrayList<>();
-
-		// swap top left with top right
-		board = getBoardSwapTopLeftTopRight(boardState);
-		boards.add(board);
-
-		// swap top left with bottom left
-		board = getBoardSwapTopLeftBottomLeft(boardState);
-		boards.add(board);
+	// swap boards are identified by their index in these arrays: top left with top
+	// right, top left with bottom left, top left with bottom right, top right with
+	// bottom left, top right with bottom right, bottom left with bottom right
+	private static final int[] SWAP_A = { 0, 0, 0, 1, 1, 2 };
+	private static final int[] SWAP_B = { 1, 2, 3, 2, 3, 3 };
 
-		// swap top left with bottom right
-		board = getBoardSwapTopLeftBottomRight(boardState);
-		boards.add(board);
+	protected static final int NUM_SWAP_BOARDS = SWAP_A.length;
 
-		// swap top right with bottom right
-		board = getBoardSwapTopRightBottomRight(boardState);
-		boards.add(board);
+	// a set of swap boards is a bit mask of swap board indices
+	protected static final int ALL_SWAP_BOARDS = (1 << NUM_SWAP_BOARDS) - 1;
 
-		// swap top right with bottom left
-		board = getBoardSwapTopRightBottomLeft(boardState);
-		boards.add(board);
-
-		// swap bottom left with bottom right
-		board = getBoardSwapBottomLeftBottomRight(boardState);
-		boards.add(board);
-
-		return boards;
+	/**
+	 * @return the pieces of the given player, who plays white if first and black if
+	 *         second
+	 */
+	protected static Piece getPiece(int playerID) {
+		return (playerID == 0) ? Piece.WHITE : Piece.BLACK;
 	}
 
-	protected List<Piece[][]> getSwapBoardsWithExcludeCondition(PentagoBoardState boardState, Piece otherPiece,
+	protected int getSwapBoardsWithExcludeCondition(PentagoBoardState boardState, Piece otherPiece,
 			Condition excludeCondition) {
-		Piece[][] board;
-		List<Piece[][]> boards = new ArrayList<>();
-
-		// swap top left with top right
-		board = getBoardSwapTopLeftTopRight(boardState);
-		if (!checkConditionOnBoard(board, otherPiece, excludeCondition)) {
-			boards.add(board);
-		}
-
-		// swap top left with bottom left
-		board = getBoardSwapTopLeftBottomLeft(boardState);
-		if (!checkConditionOnBoard(board, otherPiece, excludeCondition)) {
-			boards.add(board);
-		}
-
-		// swap top left with bottom right
-		board = getBoardSwapTopLeftBottomRight(boardState);
-		if (!checkConditionOnBoard(board, otherPiece, excludeCondition)) {
-			boards.add(board);
-		}
-
-		// swap top right with bottom right
-		board = getBoardSwapTopRightBottomRight(boardState);
-		if (!checkConditionOnBoard(board, otherPiece, excludeCondition)) {
-			boards.add(board);
-		}
-
-		// swap top right with bottom left
-		board = getBoardSwapTopRightBottomLeft(boardState);
-		if (!checkConditionOnBoard(board, otherPiece, excludeCondition)) {
-			boards.add(board);
-		}
-
-		// swap bottom left with bottom right
-		board = getBoardSwapBottomLeftBottomRight(boardState);
-		if (!checkConditionOnBoard(board, otherPiece, excludeCondition)) {
-			boards.add(board);
-		}
-
-		return boards;
-	}
-
-	protected boolean checkConditionOnBoards(List<Piece[][]> boards, Piece turnPiece, Condition condition) {
-		for (Piece[][] bboard : boards) {
-			if (checkConditionOnBoard(bboard, turnPiece, condition)) {
-				return true;
-			}
-		}
-
-		return false;
-	}
-
-	protected boolean checkConditionOnBoard(Piece[][] board, Piece piece, Condition condition) {
-		if (checkConditionOnRows(board, piece, condition)) {
-			return true;
-		}
-		if (checkConditionOnColumns(board, piece, condition)) {
-			return true;
-		}
-		if (checkConditionOnDiagonals(board, piece, condition)) {
-			return true;
-		}
-
-		return false;
-	}
-
-	protected boolean checkConditionOnRows(Piece[][] board, Piece piece, Condition condition) {
-		Piece[] pieces = new Piece[5];
-
-		for (int i = 0; i < BOARD_SIZE; i++) {
-			for (int j = 0; j < 5; j++) {
-				pieces[j] = board[i][j];
-			}
-			if (checkCondition(pieces, piece, condition)) {
-				return true;
-			}
-
-			for (int j = 1; j < 6; j++) {
-				pieces[j - 1] = board[i][j];
-			}
-			if (checkCondition(pieces, piece, condition)) {
-				return true;
+		int boards = 0;
+		for (int swap = 0; swap < NUM_SWAP_BOARDS; swap++) {
+			if (!checkConditionOnBoard(boardState, swap, otherPiece, excludeCondition)) {
+				boards |= 1 << swap;
 			}
 		}
-
-		return false;
+		return boards;
 	}
 
-	protected boolean checkConditionOnColumns(Piece[][] board, Piece piece, Condition condition) {
-		Piece[] pieces = new Piece[5];
-
-		for (int j = 0; j < BOARD_SIZE; j++) {
-			for (int i = 0; i < 5; i++) {
-				pieces[i] = board[i][j];
-			}
-			if (checkCondition(pieces, piece, condition)) {
-				return true;
-			}
-
-			for (int i = 1; i < 6; i++) {
-				pieces[i - 1] = board[i][j];
-			}
-			if (checkCondition(pieces, piece, condition)) {
+	protected boolean checkConditionOnBoards(PentagoBoardState boardState, int boards, Piece turnPiece,
+			Condition condition) {
+		for (int swap = 0; swap < NUM_SWAP_BOARDS; swap++) {
+			if ((boards & (1 << swap)) != 0 && checkConditionOnBoard(boardState, swap, turnPiece, condition)) {
 				return true;
 			}
 		}
@@ -236,202 +54,84 @@ public abstract class PentagoHeuristicBase implements PentagoHeuristic {
 		return false;
 	}
 
-	protected boolean checkConditionOnDiagonals(Piece[][] board, Piece piece, Condition condition) {
-		// descending
-		if (checkConditionOnDescendingDiagonal(board, piece, 0, 0, condition)) {
-			return true;
-		}
-		if (checkConditionOnDescendingDiagonal(board, piece, 1, 1, condition)) {
-			return true;
-		}
-		if (checkConditionOnDescendingDiagonal(board, piece, 0, 1, condition)) {
-			return true;
-		}
-		if (checkConditionOnDescendingDiagonal(board, piece, 1, 0, condition)) {
-			return true;
-		}
-
-		// ascending
-		if (checkConditionOnAscendingDiagonal(board, piece, BOARD_SIZE - 1, 0, condition)) {
-			return true;
-		}
-		if (checkConditionOnAscendingDiagonal(board, piece, BOARD_SIZE - 2, 1, condition)) {
-			return true;
-		}
-		if (checkConditionOnAscendingDiagonal(board, piece, BOARD_SIZE - 2, 0, condition)) {
-			return true;
-		}
-		if (checkConditionOnAscendingDiagonal(board, piece, BOARD_SIZE - 1, 1, condition)) {
-			return true;
-		}
-
-		return false;
-	}
-
-	protected boolean checkConditionOnDescendingDiagonal(Piece[][] board, Piece piece, int i, int j,
+	protected boolean checkConditionOnBoard(PentagoBoardState boardState, int swap, Piece piece,
 			Condition condition) {
-		Piece[] pieces = new Piece[5];
-		for (int k = 0; k < 5; k++) {
-			pieces[k] = board[i + k][j + k];
-		}
-		if (checkCondition(pieces, piece, condition)) {
-			return true;
-		}
-
-		return false;
+		return countConditionOnBoard(boardState, swap, piece, condition, true) > 0;
 	}
 
-	protected boolean checkConditionOnAscendingDiagonal(Piece[][] board, Piece piece, int i, int j,
+	protected int countConditionOnBoards(PentagoBoardState boardState, int boards, Piece turnPiece,
 			Condition condition) {
-		Piece[] pieces = new Piece[5];
-		for (int k = 0; k < 5; k++) {
-			pieces[k] = board[i - k][j + k];
-		}
-		if (checkCondition(pieces, piece, condition)) {
-			return true;
-		}
-
-		return false;
-	}
-
-	protected int countConditionOnBoards(List<Piece[][]> boards, Piece turnPiece, Condition condition) {
-		int nCount = 0;
 		int nMaxCount = 0;
 
-		for (Piece[][] bboard : boards) {
-			nCount = countConditionOnBoard(bboard, turnPiece, condition);
-			if (nCount > nMaxCount) {
-				nMaxCount = nCount;
+		for (int swap = 0; swap < NUM_SWAP_BOARDS; swap++) {
+			if ((boards & (1 << swap)) != 0) {
+				int nCount = countConditionOnBoard(boardState, swap, turnPiece, condition, false);
+				if (nCount > nMaxCount) {
+					nMaxCount = nCount;
+				}
 			}
 		}
 
 		return nMaxCount;
 	}
 
-	protected int countConditionOnBoard(Piece[][] board, Piece piece, Condition condition) {
-		int counter = 0;
-		counter += countConditionOnRows(board, piece, condition);
-		counter += countConditionOnColumns(board, piece, condition);
-		counter += countConditionOnDiagonals(board, piece, condition);
-		return counter;
-	}
+	/**
+	 * Counts the rows, columns and diagonals of 5 cells satisfying the condition on
+	 * the board obtained by applying the given swap, using the per-quadrant line
+	 * count tables instead of building the swapped board
+	 */
+	protected int countConditionOnBoard(PentagoBoardState boardState, int swap, Piece piece, Condition condition,
+			boolean stopAtFirst) {
+		int a = SWAP_A[swap];
+		int b = SWAP_B[swap];
+		int tl = boardState.getQuadrantId(swappedQuadrant(0, a, b));
+		int tr = boardState.getQuadrantId(swappedQuadrant(1, a, b));
+		int bl = boardState.getQuadrantId(swappedQuadrant(2, a, b));
+		int br = boardState.getQuadrantId(swappedQuadrant(3, a, b));
 
-	protected int countConditionOnRows(Piece[][] board, Piece piece, Condition condition) {
 		int counter = 0;
-
-		Piece[] pieces = new Piece[5];
-		for (int i = 0; i < BOARD_SIZE; i++) {
-			for (int j = 0; j < 5; j++) {
-				pieces[j] = board[i][j];
-			}
-			if (checkCondition(pieces, piece, condition)) {
-				counter++;
-			}
-
-			for (int j = 1; j < 6; j++) {
-				pieces[j - 1] = board[i][j];
-			}
-			if (checkCondition(pieces, piece, condition)) {
-				counter++;
+		for (int word = 0; word < LINE_COUNT_WORDS; word++) {
+			long counts = PentagoQuadrantTables.lineCounts(tl, tr, bl, br, word);
+			for (int i = 0; i < LINES_PER_WORD; i++) {
+				int white = PentagoQuadrantTables.whiteCount(counts, i);
+				int black = PentagoQuadrantTables.blackCount(counts, i);
+				boolean found = (piece == Piece.WHITE) ? checkCondition(white, black, condition)
+						: checkCondition(black, white, condition);
+				if (found) {
+					counter++;
+					if (stopAtFirst) {
+						return counter;
+					}
+				}
 			}
 		}
 
 		return counter;
 	}
 
-	protected int countConditionOnColumns(Piece[][] board, Piece piece, Condition condition) {
-		int counter = 0;
-
-		Piece[] pieces = new Piece[5];
-		for (int j = 0; j < BOARD_SIZE; j++) {
-			for (int i = 0; i < 5; i++) {
-				pieces[i] = board[i][j];
-			}
-			if (checkCondition(pieces, piece, condition)) {
-				counter++;
-			}
-
-			for (int i = 1; i < 6; i++) {
-				pieces[i - 1] = board[i][j];
-			}
-			if (checkCondition(pieces, piece, condition)) {
-				counter++;
-			}
+	// the quadrant which ends up in the given slot after swapping a and b
+	private static int swappedQuadrant(int slot, int a, int b) {
+		if (slot == a) {
+			return b;
 		}
-
-		return counter;
-	}
-
-	protected int countConditionOnDiagonals(Piece[][] board, Piece piece, Condition condition) {
-		int counter = 0;
-
-		// descending
-		counter += countConditionOnDescendingDiagonal(board, piece, 0, 0, condition);
-		counter += countConditionOnDescendingDiagonal(board, piece, 1, 1, condition);
-		counter += countConditionOnDescendingDiagonal(board, piece, 0, 1, condition);
-		counter += countConditionOnDescendingDiagonal(board, piece, 1, 0, condition);
-
-		// ascending
-		counter += countConditionOnAscendingDiagonal(board, piece, BOARD_SIZE - 1, 0, condition);
-		counter += countConditionOnAscendingDiagonal(board, piece, BOARD_SIZE - 2, 1, condition);
-		counter += countConditionOnAscendingDiagonal(board, piece, BOARD_SIZE - 2, 0, condition);
-		counter += countConditionOnAscendingDiagonal(board, piece, BOARD_SIZE - 1, 1, condition);
-
-		return counter;
-	}
-
-	protected int countConditionOnDescendingDiagonal(Piece[][] board, Piece piece, int i, int j, Condition condition) {
-		int counter = 0;
-
-		Piece[] pieces = new Piece[5];
-		for (int k = 0; k < 5; k++) {
-			pieces[k] = board[i + k][j + k];
-		}
-		if (checkCondition(pieces, piece, condition)) {
-			counter++;
-		}
-
-		return counter;
-	}
-
-	protected int countConditionOnAscendingDiagonal(Piece[][] board, Piece piece, int i, int j, Condition condition) {
-		int counter = 0;
-
-		Piece[] pieces = new Piece[5];
-		for (int k = 0; k < 5; k++) {
-			pieces[k] = board[i - k][j + k];
-		}
-		if (checkCondition(pieces, piece, condition)) {
-			counter++;
-		}
-
-		return counter;
-	}
-
-	protected Pair<Integer, Integer> countNumberOfPiecesLike(Piece targetPiece, Piece[] pieces) {
-		Pair<Integer, Integer> pair = new Pair<>(0, 0);
-		for (Piece piece : pieces) {
-			if (piece == targetPiece) {
-				pair.key++;
-			} else if (piece == Piece.EMPTY) {
-				pair.value++;
-			}
+		if (slot == b) {
+			return a;
 		}
-		return pair;
+		return slot;
 	}
 
-	protected boolean checkCondition(Piece[] pieces, Piece piece, Condition condition) {
-		Pair<Integer, Integer> pair = countNumberOfPiecesLike(piece, pieces);
+	protected boolean checkCondition(int numPieces, int numOtherPieces, Condition condition) {
+		int numEmpty = 5 - numPieces - numOtherPieces;
 
 		switch (condition) {
 		case THREE_AND_TWO_EMPTY:
-			return pair.key == 3 && pair.value == 2;
+			return numPieces == 3 && numEmpty == 2;
 		case FOUR_AND_ONE_EMPTY:
-			return pair.key == 4 && pair.value == 1;
+			return numPieces == 4 && numEmpty == 1;
 		case FOUR_AND_ONE_EMPTY_OR_FIVE:
-			return pair.key == 4 && pair.value == 1 || pair.key == 5;
+			return numPieces == 4 && numEmpty == 1 || numPieces == 5;
 		case FIVE:
-			return pair.key == 5;
+			return numPieces == 5;
 		}
 
 		return false;
@@ -0,0 +1,116 @@
+package student_player;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import boardgame.Board;
+import pentago_swap.PentagoBoard;
+import pentago_swap.PentagoBoardState;
+import pentago_swap.PentagoMove;
+
+/**
+ * Fits the ProbCut model of the alpha-beta search on positions of played games:
+ * every position of the logs is searched at the shallow depth and at the deep one,
+ * and the deep scores are regressed on the shallow ones. Positions with a decided
+ * score are left out, since their scores are not estimates.
+ *
+ * From the root directory of the project, run
+ *
+ * java -Dstudent.probCut=false -cp bin student_player.ProbCutCalibration depth
+ * logs/game*.log
+ *
+ * The shallow depth is depth minus SearchConfig.PROBCUT_REDUCTION, so the fit is
+ * for nodes depth plies from the depth limit. The output ends with the settings of
+ * the fitted model.
+ */
+public class ProbCutCalibration {
+
+	// a budget no search at the calibration depths comes close to
+	private static final long BUDGET_MILLIS = 3600 * 1000L;
+	private static final int TT_MEGABYTES = 16;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: java -Dstudent.probCut=false student_player.ProbCutCalibration depth logs...");
+			System.exit(1);
+		}
+		if (SearchConfig.PROBCUT) {
+			System.err.println("ProbCut must be off while it is calibrated: -Dstudent.probCut=false");
+			System.exit(1);
+		}
+		int deepDepth = Integer.parseInt(args[0]);
+		int shallowDepth = deepDepth - SearchConfig.PROBCUT_REDUCTION;
+		if (shallowDepth < 1) {
+			System.err.println("The depth must be more than student.probCutReduction");
+			System.exit(1);
+		}
+
+		LazySmpSearch search = new LazySmpSearch(1);
+		// sums for the least squares fit of deep = a * shallow + b
+		long n = 0;
+		double sumS = 0;
+		double sumD = 0;
+		double sumSS = 0;
+		double sumSD = 0;
+		double sumDD = 0;
+		for (int i = 1; i < args.length; i++) {
+			PentagoBoardState boardState = (PentagoBoardState) new PentagoBoard().getBoardState();
+			for (String line : Files.readAllLines(Paths.get(args[i]))) {
+				if (!isMove(line) || boardState.getWinner() != Board.NOBODY) {
+					continue;
+				}
+				if (boardState.getNumEmptyCells() > deepDepth) {
+					int shallow = getScore(search, boardState, shallowDepth);
+					int deep = getScore(search, boardState, deepDepth);
+					if (!isDecided(shallow) && !isDecided(deep)) {
+						n++;
+						sumS += shallow;
+						sumD += deep;
+						sumSS += (double) shallow * shallow;
+						sumSD += (double) shallow * deep;
+						sumDD += (double) deep * deep;
+					}
+				}
+				boardState.processMove(new PentagoMove(line.trim()));
+			}
+		}
+		search.shutdown();
+		if (n < 3) {
+			System.err.println("Too few positions with undecided scores: " + n);
+			System.exit(1);
+		}
+
+		double varS = sumSS - sumS * sumS / n;
+		double varD = sumDD - sumD * sumD / n;
+		double cov = sumSD - sumS * sumD / n;
+		double slope = cov / varS;
+		double offset = (sumD - slope * sumS) / n;
+		double sigma = Math.sqrt(Math.max(0, varD - slope * cov) / (n - 2));
+		System.out.println(String.format("%d positions, depth %d against depth %d, correlation %.3f", n, shallowDepth,
+				deepDepth, cov / Math.sqrt(varS * varD)));
+		System.out.println(String.format("-Dstudent.probCutSlope=%.3f -Dstudent.probCutOffset=%.1f "
+				+ "-Dstudent.probCutSigma=%.1f", slope, offset, sigma));
+	}
+
+	/**
+	 * @return true for the lines of a log which are moves, not headers or messages
+	 */
+	private static boolean isMove(String line) {
+		return !line.isEmpty() && Character.isDigit(line.charAt(0));
+	}
+
+	private static boolean isDecided(int score) {
+		return score == Node.WIN_SCORE || score == Node.LOSS_SCORE;
+	}
+
+	/**
+	 * @return the score of a fixed depth search for the player to move
+	 */
+	private static int getScore(LazySmpSearch search, PentagoBoardState boardState, int depth) {
+		search.search(boardState, boardState.getTurnPlayer(), new Deadline(BUDGET_MILLIS, 1),
+				new TranspositionTable(TT_MEGABYTES), depth);
+		return search.getScore();
+	}
+
+}
@@ -0,0 +1,349 @@
+package student_player;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import boardgame.Board;
+import pentago_swap.PentagoBoard;
+import pentago_swap.PentagoBoardState;
+import pentago_swap.PentagoMove;
+
+/**
+ * Depth-first proof-number search (df-pn): proves or disproves that the player to
+ * move at the root, the attacker, can force a win, or with drawIsWin at least a
+ * draw. Every position has a proof number, the least number of leaves to prove to
+ * prove it, and a disproof number; the search always expands the most proving
+ * position, but stays in a subtree until its numbers pass thresholds, so it needs
+ * no tree in memory, only the ProofTable. Game positions never repeat, so there
+ * are no cycles to handle.
+ *
+ * A player who can win at once is taken to do so, and a leaf starts with proof and
+ * disproof numbers 1. The root has one child per symmetry class, the other nodes
+ * one per distinct board.
+ *
+ * This is an offline tool. From the root directory of the project, run
+ *
+ * java -Xmx2g -cp bin student_player.ProofNumberSolver [-minutes m] [-memory mb]
+ * [-spill file [-spillMegabytes mb]] [-draw] [-export plies] solved-file [moves]
+ *
+ * where moves are the moves leading to the position, as "x y A B" separated by
+ * commas (e.g. "3 5 TL TR,5 1 TL BR"), the empty board by default. The proven
+ * positions are added to solved-file, which the student player loads with
+ * -Dstudent.solvedFile: the root and every attacker position of the proof down to
+ * the export depth (4 plies by default) with its proving move, and the defender
+ * positions in between. The spill file keeps the proof table of a long run on
+ * disk, and a later run on the same file starts from it.
+ */
+public class ProofNumberSolver {
+
+	/**
+	 * Results of a search.
+	 */
+	public enum Result {
+		PROVEN, DISPROVEN, UNKNOWN
+	}
+
+	// proof numbers saturate at this value, which marks a proven or disproven node
+	static final int INFINITY = 1 << 30;
+
+	private static final int MAX_PLIES = PentagoBoardState.BOARD_SIZE * PentagoBoardState.BOARD_SIZE;
+	private static final long PROGRESS_NODES = 1L << 24;
+
+	// values of the children of a node which end the game
+	private static final byte NOT_TERMINAL = 0;
+	private static final byte ATTACKER_SUCCEEDS = 1;
+	private static final byte ATTACKER_FAILS = 2;
+
+	private final ProofTable table;
+	private final boolean drawIsWin;
+
+	// per ply: the moves, the hashes of the positions they lead to, and whether
+	// these end the game
+	private final int[][] moveBuffers = new int[MAX_PLIES][PentagoMove.NUM_CODES];
+	private final long[][] childHashes = new long[MAX_PLIES][PentagoMove.NUM_CODES];
+	private final byte[][] childTerminal = new byte[MAX_PLIES][PentagoMove.NUM_CODES];
+	private final int[] entry = new int[3];
+
+	private int attacker;
+	private Deadline deadline;
+	private long rootHash;
+	private long nodeCount;
+
+	/**
+	 * @param table     the proof and disproof numbers, which may be kept between
+	 *                  searches of the same attacker and drawIsWin
+	 * @param drawIsWin whether a draw counts as a success for the attacker
+	 */
+	public ProofNumberSolver(ProofTable table, boolean drawIsWin) {
+		this.table = table;
+		this.drawIsWin = drawIsWin;
+	}
+
+	/**
+	 * Searches the given position, which must not have a winner, until it is solved
+	 * or the deadline passes.
+	 */
+	public Result solve(PentagoBoardState boardState, Deadline deadline) {
+		PentagoBoardState state = (PentagoBoardState) boardState.clone();
+		this.deadline = deadline;
+		attacker = state.getTurnPlayer();
+		rootHash = state.getHash();
+		nodeCount = 0;
+		try {
+			mid(state, INFINITY - 1, INFINITY - 1, 0);
+		} catch (Deadline.ExpiredException e) {
+			// the numbers stored so far are kept for the next run
+		}
+		return getResult(rootHash);
+	}
+
+	/**
+	 * @return the number of nodes of the last search
+	 */
+	public long getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Adds the proven positions of the proof of the given position, solved by the
+	 * last search, down to the given depth. Attacker positions are stored with the
+	 * move proving them; a proof lost from the table is searched again.
+	 */
+	public void export(PentagoBoardState boardState, int plies, SolvedPositions positions) {
+		PentagoBoardState state = (PentagoBoardState) boardState.clone();
+		Result result = getResult(state.getHash());
+		if (result == Result.PROVEN) {
+			deadline = new Deadline(Long.MAX_VALUE / 1000000L, 1);
+			exportProof(state, plies, 0, positions);
+		} else if (result == Result.DISPROVEN) {
+			positions.put(state.getHash(), drawIsWin ? SolvedPositions.LOSS : SolvedPositions.NOT_WIN,
+					TranspositionTable.NO_MOVE);
+		}
+	}
+
+	private void exportProof(PentagoBoardState state, int plies, int ply, SolvedPositions positions) {
+		long hash = state.getHash();
+		if (state.getTurnPlayer() == attacker) {
+			if (!table.get(hash, entry) || entry[0] != 0) {
+				mid(state, INFINITY - 1, INFINITY - 1, ply);
+				table.get(hash, entry);
+			}
+			int move = entry[2];
+			positions.put(hash, drawIsWin ? SolvedPositions.NOT_LOSS : SolvedPositions.WIN, move);
+			if (ply + 1 < plies) {
+				long undoToken = state.doMove(move);
+				if (state.getWinner() == Board.NOBODY) {
+					exportProof(state, plies, ply + 1, positions);
+				}
+				state.undoMove(undoToken);
+			}
+		} else {
+			positions.put(hash, drawIsWin ? SolvedPositions.NOT_WIN : SolvedPositions.LOSS,
+					TranspositionTable.NO_MOVE);
+			int[] moves = new int[PentagoMove.NUM_CODES];
+			int count = state.getDistinctLegalMovesInto(moves);
+			for (int i = 0; i < count && ply + 1 < plies; i++) {
+				long undoToken = state.doMove(moves[i]);
+				if (state.getWinner() == Board.NOBODY) {
+					exportProof(state, plies, ply + 1, positions);
+				}
+				state.undoMove(undoToken);
+			}
+		}
+	}
+
+	private Result getResult(long hash) {
+		if (table.get(hash, entry)) {
+			if (entry[0] == 0) {
+				return Result.PROVEN;
+			}
+			if (entry[1] == 0) {
+				return Result.DISPROVEN;
+			}
+		}
+		return Result.UNKNOWN;
+	}
+
+	/**
+	 * Searches below the given node until its proof number reaches proofThreshold
+	 * or its disproof number reaches disproofThreshold, and stores its numbers.
+	 */
+	private void mid(PentagoBoardState state, int proofThreshold, int disproofThreshold, int ply) {
+		deadline.check();
+		if (++nodeCount % PROGRESS_NODES == 0) {
+			printProgress();
+		}
+		long hash = state.getHash();
+		boolean attackerToMove = state.getTurnPlayer() == attacker;
+		int win = state.getWinningMoveCode();
+		if (win != PentagoMove.ILLEGAL_CODE) {
+			if (attackerToMove) {
+				table.put(hash, 0, INFINITY, win);
+			} else {
+				table.put(hash, INFINITY, 0, TranspositionTable.NO_MOVE);
+			}
+			return;
+		}
+
+		int[] moves = moveBuffers[ply];
+		long[] hashes = childHashes[ply];
+		byte[] terminal = childTerminal[ply];
+		int count = (ply == 0) ? state.getSymmetryReducedMovesInto(moves) : state.getDistinctLegalMovesInto(moves);
+		for (int i = 0; i < count; i++) {
+			long undoToken = state.doMove(moves[i]);
+			hashes[i] = state.getHash();
+			terminal[i] = NOT_TERMINAL;
+			int winner = state.getWinner();
+			if (winner != Board.NOBODY) {
+				boolean succeeds = winner == attacker || (drawIsWin && winner == Board.DRAW);
+				terminal[i] = succeeds ? ATTACKER_SUCCEEDS : ATTACKER_FAILS;
+			}
+			state.undoMove(undoToken);
+		}
+
+		while (true) {
+			// at an attacker node, the proof number is the least of the children's and
+			// the disproof number their sum; at a defender node, the other way round
+			int best = 0;
+			int bestProof = INFINITY;
+			int bestDisproof = INFINITY;
+			int secondBest = INFINITY;
+			long sum = 0;
+			for (int i = 0; i < count; i++) {
+				int proof;
+				int disproof;
+				if (terminal[i] == ATTACKER_SUCCEEDS) {
+					proof = 0;
+					disproof = INFINITY;
+				} else if (terminal[i] == ATTACKER_FAILS) {
+					proof = INFINITY;
+					disproof = 0;
+				} else if (table.get(hashes[i], entry)) {
+					proof = entry[0];
+					disproof = entry[1];
+				} else {
+					proof = 1;
+					disproof = 1;
+				}
+				int key = attackerToMove ? proof : disproof;
+				int bestKey = attackerToMove ? bestProof : bestDisproof;
+				if (key < bestKey) {
+					secondBest = bestKey;
+					best = i;
+					bestProof = proof;
+					bestDisproof = disproof;
+				} else if (key < secondBest) {
+					secondBest = key;
+				}
+				sum += attackerToMove ? disproof : proof;
+			}
+			int total = (int) Math.min(INFINITY, sum);
+			int proof = attackerToMove ? bestProof : total;
+			int disproof = attackerToMove ? total : bestDisproof;
+			int move = (attackerToMove && proof == 0) ? moves[best] : TranspositionTable.NO_MOVE;
+			table.put(hash, proof, disproof, move);
+			if (proof >= proofThreshold || disproof >= disproofThreshold) {
+				return;
+			}
+
+			int childProofThreshold;
+			int childDisproofThreshold;
+			if (attackerToMove) {
+				childProofThreshold = Math.min(proofThreshold, secondBest + 1);
+				childDisproofThreshold = (int) Math.min(INFINITY, (long) disproofThreshold - disproof + bestDisproof);
+			} else {
+				childProofThreshold = (int) Math.min(INFINITY, (long) proofThreshold - proof + bestProof);
+				childDisproofThreshold = Math.min(disproofThreshold, secondBest + 1);
+			}
+			long undoToken = state.doMove(moves[best]);
+			mid(state, childProofThreshold, childDisproofThreshold, ply + 1);
+			state.undoMove(undoToken);
+		}
+	}
+
+	private void printProgress() {
+		String numbers = "unknown";
+		if (table.get(rootHash, entry)) {
+			numbers = entry[0] + "/" + entry[1];
+		}
+		System.out.println(String.format("%d nodes in %d s, root proof/disproof %s, %d entries in memory, %d spills",
+				nodeCount, deadline.getElapsedMillis() / 1000, numbers, table.size(), table.getSpills()));
+	}
+
+	public static void main(String[] args) throws IOException {
+		long minutes = 60;
+		int memoryMegabytes = 256;
+		String spillFile = null;
+		long spillMegabytes = 4096;
+		boolean drawIsWin = false;
+		int exportPlies = 4;
+		int i = 0;
+		for (; i < args.length && args[i].startsWith("-"); i++) {
+			switch (args[i]) {
+			case "-minutes":
+				minutes = Long.parseLong(args[++i]);
+				break;
+			case "-memory":
+				memoryMegabytes = Integer.parseInt(args[++i]);
+				break;
+			case "-spill":
+				spillFile = args[++i];
+				break;
+			case "-spillMegabytes":
+				spillMegabytes = Long.parseLong(args[++i]);
+				break;
+			case "-draw":
+				drawIsWin = true;
+				break;
+			case "-export":
+				exportPlies = Integer.parseInt(args[++i]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		if (i >= args.length) {
+			throw new IllegalArgumentException("Missing solved-file");
+		}
+		Path solvedPath = Paths.get(args[i++]);
+
+		PentagoBoardState boardState = (PentagoBoardState) new PentagoBoard().getBoardState();
+		if (i < args.length) {
+			for (String move : args[i].split(",")) {
+				boardState.processMove(new PentagoMove(move.trim() + " " + boardState.getTurnPlayer()));
+			}
+		}
+		if (boardState.getWinner() != Board.NOBODY) {
+			throw new IllegalArgumentException("The game is over");
+		}
+
+		FileProofStore store = (spillFile == null) ? null : new FileProofStore(Paths.get(spillFile), spillMegabytes);
+		ProofTable table = new ProofTable(memoryMegabytes, store);
+		try {
+			ProofNumberSolver solver = new ProofNumberSolver(table, drawIsWin);
+			Deadline deadline = new Deadline(minutes * 60 * 1000, 1);
+			Result result = solver.solve(boardState, deadline);
+			System.out.println(String.format(
+					"%s that the player to move can %s: %d nodes in %d s, %d spills, %d store hits", result,
+					drawIsWin ? "at least draw" : "win", solver.getNodeCount(), deadline.getElapsedMillis() / 1000,
+					table.getSpills(), table.getStoreHits()));
+
+			if (result != Result.UNKNOWN) {
+				SolvedPositions positions = Files.exists(solvedPath) ? SolvedPositions.load(solvedPath)
+						: new SolvedPositions();
+				solver.export(boardState, exportPlies, positions);
+				positions.save(solvedPath);
+				System.out.println(String.format("%d solved positions in %s", positions.size(), solvedPath));
+			}
+		} finally {
+			if (store != null) {
+				// the unsolved numbers in memory make the next run on this store faster
+				table.spill();
+				store.close();
+			}
+		}
+	}
+
+}
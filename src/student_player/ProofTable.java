@@ -0,0 +1,136 @@
+package student_player;
+
+import java.util.Arrays;
+
+/**
+ * Proof and disproof numbers of the positions seen by ProofNumberSolver, with the
+ * move which proved each solved attacker position. The entries live in a bounded
+ * open-addressing table in memory. When it is three quarters full, all its entries
+ * are spilled to a FileProofStore, if there is one, and the memory is cleared; a
+ * lookup missing in memory then reads the store and brings the entry back. Without
+ * a store, the spilled entries are lost and computed again when needed.
+ */
+public class ProofTable {
+
+	// no entry: a new position, about which nothing is known
+	private static final long EMPTY_KEY = 0;
+
+	private final long[] keys;
+	private final int[] proofs;
+	private final int[] disproofs;
+	private final int[] moves;
+	private final int mask;
+	private final FileProofStore store;
+	private final int[] storeEntry = new int[3];
+	private int size;
+
+	// statistics
+	private long spills;
+	private long storeHits;
+
+	/**
+	 * @param megabytes memory budget; the number of entries is the largest power of
+	 *                  two fitting in it
+	 * @param store     where entries go once the memory is full, or null
+	 */
+	public ProofTable(int megabytes, FileProofStore store) {
+		int entries = (int) Math.min(1 << 30, Long.highestOneBit(Math.max(2, (long) megabytes * 1024 * 1024 / 20)));
+		keys = new long[entries];
+		proofs = new int[entries];
+		disproofs = new int[entries];
+		moves = new int[entries];
+		mask = entries - 1;
+		this.store = store;
+	}
+
+	/**
+	 * Looks a position up.
+	 *
+	 * @param entry receives the proof number, disproof number and move code
+	 * @return false if nothing is known about the position
+	 */
+	public boolean get(long hash, int[] entry) {
+		int index = find(hash);
+		if (keys[index] == hash && hash != EMPTY_KEY) {
+			entry[0] = proofs[index];
+			entry[1] = disproofs[index];
+			entry[2] = moves[index];
+			return true;
+		}
+		if (store != null && store.get(hash, storeEntry)) {
+			storeHits++;
+			put(hash, storeEntry[0], storeEntry[1], storeEntry[2]);
+			System.arraycopy(storeEntry, 0, entry, 0, 3);
+			return true;
+		}
+		return false;
+	}
+
+	public void put(long hash, int proof, int disproof, int moveCode) {
+		if (hash == EMPTY_KEY) {
+			// one position in 2^64, not worth a special case
+			return;
+		}
+		int index = find(hash);
+		if (keys[index] != hash) {
+			if (size >= keys.length / 4 * 3) {
+				spill();
+				index = find(hash);
+			}
+			keys[index] = hash;
+			size++;
+		}
+		proofs[index] = proof;
+		disproofs[index] = disproof;
+		moves[index] = moveCode;
+	}
+
+	/**
+	 * @return the number of entries in memory
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of times the memory was spilled
+	 */
+	public long getSpills() {
+		return spills;
+	}
+
+	/**
+	 * @return the number of lookups answered by the store
+	 */
+	public long getStoreHits() {
+		return storeHits;
+	}
+
+	/**
+	 * Writes every entry in memory to the store, if any, and clears the memory.
+	 */
+	public void spill() {
+		if (store != null) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] != EMPTY_KEY) {
+					store.put(keys[i], proofs[i], disproofs[i], moves[i]);
+				}
+			}
+		}
+		Arrays.fill(keys, EMPTY_KEY);
+		size = 0;
+		spills++;
+	}
+
+	/**
+	 * @return the slot of the hash, or the empty slot where it would go
+	 */
+	private int find(long hash) {
+		int index = (int) (hash ^ (hash >>> 32)) & mask;
+		while (keys[index] != EMPTY_KEY && keys[index] != hash) {
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+
+}
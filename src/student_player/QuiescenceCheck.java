@@ -0,0 +1,98 @@
+package student_player;
+
+import boardgame.Board;
+import pentago_swap.PentagoBoard;
+import pentago_swap.PentagoBoardState;
+import pentago_swap.PentagoMove;
+
+/**
+ * Checks that the quiescence search does not score a position as lost when the
+ * side to move can only defend by a swap: on the position below, Black faces a
+ * threat which no piece on a threatened cell stops, whatever the swap, but a move
+ * elsewhere breaks the line with its swap. The quiescence search only tries the
+ * blocks, so its score must stay short of a loss for Black, and short of a win
+ * for White. Exits with status 1 if it does not.
+ *
+ * From the root directory of the project, run
+ *
+ * java -cp bin student_player.QuiescenceCheck
+ */
+public class QuiescenceCheck {
+
+	// a random game, Black to move
+	private static final String[] MOVES = { "0 3 TL BR 0", "4 0 TL BL 1", "4 0 TL TR 0", "5 4 TR BL 1",
+			"0 3 TL BR 0", "4 1 TL BR 1", "5 0 TL BR 0", "5 4 TL BR 1", "3 0 TL BL 0", "4 1 TR BR 1", "3 1 BL BR 0",
+			"5 2 TL BR 1", "2 3 TL BR 0", "2 2 TR BR 1", "4 3 TL TR 0", "4 2 TR BL 1", "3 1 TL TR 0" };
+
+	private static final long BUDGET_MILLIS = 60 * 1000L;
+
+	public static void main(String[] args) {
+		PentagoBoardState boardState = (PentagoBoardState) new PentagoBoard().getBoardState();
+		for (String move : MOVES) {
+			boardState.processMove(new PentagoMove(move));
+		}
+		int player = boardState.getTurnPlayer();
+		long threats = boardState.getThreatCells(1 - player);
+		PentagoMove swapDefense = getSwapDefense(boardState, threats);
+		System.out.println(boardState);
+		if (threats == 0 || holdsByBlock(boardState, threats) || swapDefense == null) {
+			System.out.println("The position no longer needs a swap defense; the check is void.");
+			System.exit(1);
+		}
+		System.out.println("Swap defense: " + swapDefense.toPrettyString());
+
+		boolean ok = true;
+		ok &= check("defender", new Node(boardState, player), Node.LOSS_SCORE, true);
+		ok &= check("attacker", new Node(boardState, 1 - player), Node.WIN_SCORE, false);
+		System.out.println(ok ? "The swap defense is not scored as lost." : "A quiescence score is decided.");
+		System.exit(ok ? 0 : 1);
+	}
+
+	private static boolean check(String name, Node node, int decidedScore, boolean defender) {
+		SearchContext context = new SearchContext(new Deadline(BUDGET_MILLIS, 1), new TranspositionTable(1));
+		int score = node.getQuiescenceScore(context);
+		boolean ok = defender ? score > decidedScore : score < decidedScore;
+		System.out.println(String.format("%-9s score %4d (must not be %d) %s", name, score, decidedScore,
+				ok ? "OK" : "FAIL"));
+		return ok;
+	}
+
+	/**
+	 * @return true if some piece on a threatened cell, with some swap, leaves the
+	 *         opponent without a winning move
+	 */
+	private static boolean holdsByBlock(PentagoBoardState boardState, long threats) {
+		for (; threats != 0; threats &= threats - 1) {
+			int cell = Long.numberOfTrailingZeros(threats);
+			for (int swap = 0; swap < PentagoMove.NUM_SWAPS; swap++) {
+				if (holds(boardState, cell * PentagoMove.NUM_SWAPS + swap)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return a move off the threatened cells leaving the opponent without a
+	 *         winning move, or null
+	 */
+	private static PentagoMove getSwapDefense(PentagoBoardState boardState, long threats) {
+		for (PentagoMove move : boardState.getAllLegalMoves()) {
+			int code = move.getCode();
+			if ((threats & (1L << (code / PentagoMove.NUM_SWAPS))) == 0 && holds(boardState, code)) {
+				return move;
+			}
+		}
+		return null;
+	}
+
+	private static boolean holds(PentagoBoardState boardState, int code) {
+		long undoToken = boardState.doMove(code);
+		boolean holds = boardState.getWinner() == Board.NOBODY
+				&& boardState.getWinningMoveCode() == PentagoMove.ILLEGAL_CODE;
+		boardState.undoMove(undoToken);
+		return holds;
+	}
+
+}
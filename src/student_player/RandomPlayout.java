@@ -0,0 +1,53 @@
+package student_player;
+
+import boardgame.Board;
+import pentago_swap.PentagoBoardState;
+import pentago_swap.PentagoMove;
+
+/**
+ * Plays games out with random moves for Monte Carlo tree search, drawing them from
+ * its own xorshift generator. Guided playouts take an immediate win whenever there
+ * is one. Not thread-safe: every search thread has its own.
+ */
+public class RandomPlayout {
+
+	private final boolean guided;
+	private long randomState;
+
+	/**
+	 * @param guided whether to take immediate wins instead of random moves
+	 * @param seed   non-zero seed of the generator
+	 */
+	public RandomPlayout(boolean guided, long seed) {
+		this.guided = guided;
+		this.randomState = seed;
+	}
+
+	/**
+	 * Plays moves on the given board state until there is a winner or a draw. Black
+	 * still places the 36th piece once gameOver() is true, so that is not the end.
+	 *
+	 * @return the winner, or Board.DRAW
+	 */
+	public int play(PentagoBoardState state) {
+		while (state.getWinner() == Board.NOBODY) {
+			int code = guided ? state.getWinningMoveCode() : PentagoMove.ILLEGAL_CODE;
+			if (code == PentagoMove.ILLEGAL_CODE) {
+				code = state.getLegalMoveCode(nextInt(state.getNumEmptyCells() * PentagoMove.NUM_SWAPS));
+			}
+			state.doMove(code);
+		}
+		return state.getWinner();
+	}
+
+	/**
+	 * @return a random number in [0, bound)
+	 */
+	public int nextInt(int bound) {
+		randomState ^= randomState << 13;
+		randomState ^= randomState >>> 7;
+		randomState ^= randomState << 17;
+		return (int) (((randomState >>> 33) * bound) >>> 31);
+	}
+
+}
@@ -0,0 +1,188 @@
+package student_player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import boardgame.Board;
+import pentago_swap.PentagoBoard;
+import pentago_swap.PentagoBoardState;
+import pentago_swap.PentagoMove;
+
+/**
+ * Measures how the parallel search of SearchConfig.ENGINE scales with the number of
+ * threads: every thread count searches the same random positions to a fixed depth,
+ * each with a fresh transposition table, and the time to reach the depth and the
+ * nodes/second are compared with those of the first thread count. The Young
+ * Brothers Wait search is deterministic, so its moves and scores are also checked
+ * against those of the first thread count. Monte Carlo tree search, in the
+ * student.mctsParallel mode, has no depth: it searches every position for a fixed
+ * time instead, and the playouts/second are compared.
+ *
+ * From the root directory of the project, run
+ *
+ * java [-Dstudent.engine=ybw|mcts] -cp bin student_player.SearchBenchmark [depth
+ * [positions [threads...]]]
+ *
+ * The default is depth 4 on 10 positions with 1, 2, 4 and 8 threads; for MCTS the
+ * depth argument is the time per position in milliseconds, 1000 by default. Only
+ * the threads given by availableProcessors can run at the same time.
+ */
+public class SearchBenchmark {
+
+	private static final long SEED = 2019;
+	private static final int MIN_PLIES = 4;
+	private static final int MAX_PLIES = 16;
+	// a budget no search at the benchmark depths comes close to
+	private static final long BUDGET_MILLIS = 3600 * 1000L;
+
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int numPositions = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int[] threadCounts = { 1, 2, 4, 8 };
+		if (args.length > 2) {
+			threadCounts = new int[args.length - 2];
+			for (int i = 2; i < args.length; i++) {
+				threadCounts[i - 2] = Integer.parseInt(args[i]);
+			}
+		}
+		List<PentagoBoardState> positions = getPositions(numPositions);
+		if (SearchConfig.ENGINE == SearchConfig.Engine.MCTS) {
+			long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+			benchmarkMonteCarlo(positions, threadCounts, millis);
+			return;
+		}
+		boolean deterministic = SearchConfig.ENGINE == SearchConfig.Engine.YBW;
+		long[] baseResults = new long[positions.size()];
+		long[] results = new long[positions.size()];
+		// a first untimed run, so that every measured one runs compiled code
+		run(positions, threadCounts[0], depth, baseResults);
+
+		String engine = deterministic ? "YBW" : "Lazy SMP " + SearchConfig.ALGORITHM;
+		System.out.println(String.format("%s search to depth %d of %d positions, %d processor(s)", engine, depth,
+				positions.size(), Runtime.getRuntime().availableProcessors()));
+		System.out.println(String.format("%8s %12s %9s %14s %14s %9s%s", "threads", "time (s)", "speedup", "nodes",
+				"nodes/s", "scaling", deterministic ? "  results" : ""));
+		double baseSeconds = 0;
+		double baseNodesPerSecond = 0;
+		for (int threads : threadCounts) {
+			long[] result = run(positions, threads, depth, results);
+			double seconds = result[0] / 1e9;
+			long nodes = result[1];
+			double nodesPerSecond = nodes / seconds;
+			if (baseSeconds == 0) {
+				baseSeconds = seconds;
+				baseNodesPerSecond = nodesPerSecond;
+			}
+			String check = "";
+			if (deterministic) {
+				check = Arrays.equals(results, baseResults) ? "  identical" : "  DIFFERENT";
+			}
+			System.out.println(String.format("%8d %12.2f %9.2f %14d %14.0f %9.2f%s", threads, seconds,
+					baseSeconds / seconds, nodes, nodesPerSecond, nodesPerSecond / baseNodesPerSecond, check));
+		}
+	}
+
+	/**
+	 * Searches every position for the given time with every thread count, and
+	 * prints the playouts/second.
+	 */
+	private static void benchmarkMonteCarlo(List<PentagoBoardState> positions, int[] threadCounts, long millis) {
+		// a first untimed run, so that every measured one runs compiled code
+		runMonteCarlo(positions, threadCounts[0], millis);
+
+		System.out.println(String.format("MCTS %s search for %d ms on %d positions, %d processor(s)",
+				SearchConfig.MCTS_PARALLEL_MODE, millis, positions.size(), Runtime.getRuntime().availableProcessors()));
+		System.out.println(String.format("%8s %12s %14s %14s %9s", "threads", "time (s)", "playouts", "playouts/s",
+				"scaling"));
+		double basePlayoutsPerSecond = 0;
+		for (int threads : threadCounts) {
+			long[] result = runMonteCarlo(positions, threads, millis);
+			double seconds = result[0] / 1e9;
+			double playoutsPerSecond = result[1] / seconds;
+			if (basePlayoutsPerSecond == 0) {
+				basePlayoutsPerSecond = playoutsPerSecond;
+			}
+			System.out.println(String.format("%8d %12.2f %14d %14.0f %9.2f", threads, seconds, result[1],
+					playoutsPerSecond, playoutsPerSecond / basePlayoutsPerSecond));
+		}
+	}
+
+	/**
+	 * @return the total search time in nanoseconds and the total number of playouts
+	 */
+	private static long[] runMonteCarlo(List<PentagoBoardState> positions, int threads, long millis) {
+		ParallelMonteCarloTreeSearch search = new ParallelMonteCarloTreeSearch(SearchConfig.MCTS_PARALLEL_MODE,
+				threads, SearchConfig.MCTS_NODES, SearchConfig.MCTS_EXPLORATION, SearchConfig.MCTS_GUIDED_PLAYOUTS,
+				SearchConfig.MCTS_VIRTUAL_LOSS, false);
+		long nanos = 0;
+		long playouts = 0;
+		for (PentagoBoardState position : positions) {
+			Deadline deadline = new Deadline(millis, 1);
+			long start = System.nanoTime();
+			search.search(position, deadline);
+			nanos += System.nanoTime() - start;
+			playouts += search.getPlayouts();
+		}
+		search.shutdown();
+		return new long[] { nanos, playouts };
+	}
+
+	/**
+	 * Searches every position; results receives the score (Young Brothers Wait
+	 * only) and code of the move found for each position.
+	 * 
+	 * @return the total search time in nanoseconds and the total number of nodes
+	 */
+	private static long[] run(List<PentagoBoardState> positions, int threads, int depth, long[] results) {
+		LazySmpSearch search = new LazySmpSearch(threads);
+		YoungBrothersWaitSearch ybwSearch = new YoungBrothersWaitSearch(threads);
+		long nanos = 0;
+		long nodes = 0;
+		for (int i = 0; i < positions.size(); i++) {
+			PentagoBoardState position = positions.get(i);
+			Deadline deadline = new Deadline(BUDGET_MILLIS, 1);
+			PentagoMove move;
+			long start;
+			if (SearchConfig.ENGINE == SearchConfig.Engine.YBW) {
+				start = System.nanoTime();
+				move = ybwSearch.search(position, position.getTurnPlayer(), deadline, depth);
+				nanos += System.nanoTime() - start;
+				nodes += ybwSearch.getNodeCount();
+				results[i] = ((long) ybwSearch.getScore() << 32) | move.getCode();
+			} else {
+				TranspositionTable transpositionTable = new TranspositionTable(SearchConfig.TT_MEGABYTES);
+				start = System.nanoTime();
+				move = search.search(position, position.getTurnPlayer(), deadline, transpositionTable, depth);
+				nanos += System.nanoTime() - start;
+				nodes += search.getNodeCount();
+				results[i] = move.getCode();
+			}
+		}
+		search.shutdown();
+		ybwSearch.shutdown();
+		return new long[] { nanos, nodes };
+	}
+
+	/**
+	 * @return positions reached by random moves from the start, none of them over
+	 */
+	private static List<PentagoBoardState> getPositions(int numPositions) {
+		Random random = new Random(SEED);
+		List<PentagoBoardState> positions = new ArrayList<>();
+		while (positions.size() < numPositions) {
+			PentagoBoardState boardState = (PentagoBoardState) new PentagoBoard().getBoardState();
+			int plies = MIN_PLIES + random.nextInt(MAX_PLIES - MIN_PLIES + 1);
+			for (int i = 0; i < plies && boardState.getWinner() == Board.NOBODY; i++) {
+				List<PentagoMove> moves = boardState.getAllLegalMoves();
+				boardState.processMove(moves.get(random.nextInt(moves.size())));
+			}
+			if (boardState.getWinner() == Board.NOBODY) {
+				positions.add(boardState);
+			}
+		}
+		return positions;
+	}
+
+}
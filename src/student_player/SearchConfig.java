@@ -0,0 +1,258 @@
+package student_player;
+
+import boardgame.Server;
+
+/**
+ * Settings of the student player's search. Each one can be overridden with a system
+ * property, e.g. java -Dstudent.timeFraction=0.6 ... boardgame.Client
+ * student_player.StudentPlayer
+ */
+public class SearchConfig {
+
+	/**
+	 * Search engines of the student player.
+	 */
+	public enum Engine {
+		/** Node's alpha-beta search, run by Lazy SMP with more than one thread */
+		ALPHABETA,
+		/** Young Brothers Wait parallel alpha-beta, without transposition table */
+		YBW,
+		/** Monte Carlo tree search */
+		MCTS
+	}
+
+	/**
+	 * Algorithms of the alpha-beta search in Node.
+	 */
+	public enum Algorithm {
+		/** alpha-beta with a full window at every node */
+		ALPHABETA,
+		/** principal variation search with aspiration windows at the root */
+		PVS
+	}
+
+	/**
+	 * fraction of the server's time limit the search may use; the rest is a margin
+	 * for JVM pauses and network latency
+	 */
+	public static final double TIME_FRACTION = getDouble("student.timeFraction", 0.75);
+
+	/**
+	 * fraction of the time limit for the first move the search may use
+	 */
+	public static final double FIRST_MOVE_TIME_FRACTION = getDouble("student.firstMoveTimeFraction", 0.5);
+
+	/**
+	 * fraction of the search time after which no new iterative deepening iteration
+	 * is started
+	 */
+	public static final double SOFT_TIME_FRACTION = getDouble("student.softTimeFraction", 0.3);
+
+	/**
+	 * memory budget of the transposition table in megabytes; the client runs with
+	 * -Xmx520m
+	 */
+	public static final int TT_MEGABYTES = getInt("student.ttMegabytes", 64);
+
+	/**
+	 * file of positions proven by ProofNumberSolver, whose winning moves are played
+	 * without search; none if empty
+	 */
+	public static final String SOLVED_FILE = getString("student.solvedFile", "");
+
+	/**
+	 * most empty cells of a position the endgame solver tries to solve exactly, 0 to
+	 * never use it
+	 */
+	public static final int ENDGAME_EMPTY_CELLS = getInt("student.endgameEmptyCells", 12);
+
+	/**
+	 * fraction of the search time the endgame solver may use before the main search
+	 * takes over
+	 */
+	public static final double ENDGAME_TIME_FRACTION = getDouble("student.endgameTimeFraction", 0.5);
+
+	/**
+	 * memory budget of the endgame solver's transposition table in megabytes
+	 */
+	public static final int ENDGAME_TT_MEGABYTES = getInt("student.endgameTtMegabytes", 32);
+
+	/**
+	 * fraction of the search time spent looking for a forced win by threats before
+	 * the main search, 0 to skip it
+	 */
+	public static final double THREAT_TIME_FRACTION = getDouble("student.threatTimeFraction", 0.1);
+
+	/**
+	 * most attacker moves of a forced win by threats, the winning move included
+	 */
+	public static final int THREAT_MAX_MOVES = getInt("student.threatMaxMoves", 6);
+
+	/**
+	 * search engine, alphabeta, ybw or mcts
+	 */
+	public static final Engine ENGINE = Engine.valueOf(getString("student.engine", "alphabeta").toUpperCase());
+
+	/**
+	 * number of search threads
+	 */
+	public static final int THREADS = getInt("student.threads", Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * search algorithm, alphabeta or pvs
+	 */
+	public static final Algorithm ALGORITHM = Algorithm.valueOf(getString("student.search", "pvs").toUpperCase());
+
+	/**
+	 * half-width of the PVS aspiration window, in thousandths of a score
+	 */
+	public static final int ASPIRATION_WINDOW = getInt("student.aspirationWindow", 50);
+
+	/**
+	 * most nodes of the quiescence search below one leaf of the alpha-beta search,
+	 * 0 to score leaves statically
+	 */
+	public static final int QUIESCENCE_NODES = getInt("student.quiescenceNodes", 64);
+
+	/**
+	 * whether the alpha-beta search cuts off a node whose side to move stays above
+	 * the window even after passing the placement of its turn
+	 */
+	public static final boolean NULL_MOVE = getBoolean("student.nullMove", true);
+
+	/**
+	 * plies by which the search after a null move is shallower than the node's
+	 * remaining depth, in addition to the passed ply
+	 */
+	public static final int NULL_MOVE_REDUCTION = getInt("student.nullMoveReduction", 1);
+
+	/**
+	 * whether the alpha-beta search reduces the depth of moves late in the move
+	 * ordering (late move reductions)
+	 */
+	public static final boolean LMR = getBoolean("student.lmr", true);
+
+	/**
+	 * number of moves of a node searched at full depth before the reductions start
+	 */
+	public static final int LMR_FULL_DEPTH_MOVES = getInt("student.lmrFullDepthMoves", 8);
+
+	/**
+	 * whether the alpha-beta search cuts off a node whose shallow search predicts a
+	 * deep score outside the window (ProbCut)
+	 */
+	public static final boolean PROBCUT = getBoolean("student.probCut", false);
+
+	/**
+	 * plies by which the ProbCut shallow search is shallower than the node's
+	 * remaining depth
+	 */
+	public static final int PROBCUT_REDUCTION = getInt("student.probCutReduction", 2);
+
+	/**
+	 * slope a, offset b and standard deviation sigma of the ProbCut model: the deep
+	 * score is a times the shallow score plus b, give or take sigma, in thousandths
+	 * for the side to move; fitted by ProbCutCalibration on 12 self-play games at
+	 * depth 1 against depth 3
+	 */
+	public static final double PROBCUT_SLOPE = getDouble("student.probCutSlope", 0.836);
+	public static final double PROBCUT_OFFSET = getDouble("student.probCutOffset", 84.2);
+	public static final double PROBCUT_SIGMA = getDouble("student.probCutSigma", 3.6);
+
+	/**
+	 * number of standard deviations the predicted deep score must be outside the
+	 * window for ProbCut to cut off
+	 */
+	public static final double PROBCUT_THRESHOLD = getDouble("student.probCutThreshold", 1.5);
+
+	/**
+	 * number of nodes of the Monte Carlo tree search arena, about 15 bytes each
+	 */
+	public static final int MCTS_NODES = getInt("student.mctsNodes", 1 << 23);
+
+	/**
+	 * exploration constant of the UCT formula
+	 */
+	public static final double MCTS_EXPLORATION = getDouble("student.mctsExploration", 0.4);
+
+	/**
+	 * whether Monte Carlo playouts take immediate wins instead of random moves
+	 */
+	public static final boolean MCTS_GUIDED_PLAYOUTS = getBoolean("student.mctsGuidedPlayouts", true);
+
+	/**
+	 * non-zero seed of the random generator of the single-threaded Monte Carlo
+	 * playouts
+	 */
+	public static final long MCTS_SEED = Long.parseLong(getString("student.mctsSeed", "-7046029254386353131"));
+
+	/**
+	 * how Monte Carlo tree search uses more than one thread, tree (one shared tree)
+	 * or root (one tree per thread)
+	 */
+	public static final ParallelMonteCarloTreeSearch.Mode MCTS_PARALLEL_MODE = ParallelMonteCarloTreeSearch.Mode
+			.valueOf(getString("student.mctsParallel", "tree").toUpperCase());
+
+	/**
+	 * visits added to a node of the shared tree while its playout result is pending
+	 */
+	public static final int MCTS_VIRTUAL_LOSS = getInt("student.mctsVirtualLoss", 1);
+
+	/**
+	 * whether Monte Carlo tree search keeps the subtree under the last move and the
+	 * opponent's reply for the next move
+	 */
+	public static final boolean MCTS_REUSE_TREE = getBoolean("student.mctsReuseTree", true);
+
+	/**
+	 * whether to go on searching on the opponent's time, for the alphabeta engine
+	 * and Monte Carlo tree search with tree reuse
+	 */
+	public static final boolean PONDER = getBoolean("student.ponder", true);
+
+	/**
+	 * depth at which iterative deepening stops even if there is time left, for
+	 * benchmarks at fixed depth
+	 */
+	public static final int MAX_DEPTH = getInt("student.maxDepth", Integer.MAX_VALUE);
+
+	/**
+	 * whether to print statistics of every search (depth reached, cutoffs)
+	 */
+	public static final boolean VERBOSE = getBoolean("student.verbose", false);
+
+	private SearchConfig() {
+	}
+
+	/**
+	 * @return the search time budget for a move played on the given turn, in
+	 *         milliseconds
+	 */
+	public static long getMoveBudgetMillis(int turnNumber) {
+		if (turnNumber == 0) {
+			// the server allows more time for each player's first move
+			return (long) (Server.FIRST_MOVE_TIMEOUT * FIRST_MOVE_TIME_FRACTION);
+		}
+		return (long) (Server.DEFAULT_TIMEOUT * TIME_FRACTION);
+	}
+
+	static String getString(String property, String defaultValue) {
+		return System.getProperty(property, defaultValue);
+	}
+
+	static int getInt(String property, int defaultValue) {
+		String value = System.getProperty(property);
+		return value == null ? defaultValue : Integer.parseInt(value);
+	}
+
+	static boolean getBoolean(String property, boolean defaultValue) {
+		String value = System.getProperty(property);
+		return value == null ? defaultValue : Boolean.parseBoolean(value);
+	}
+
+	static double getDouble(String property, double defaultValue) {
+		String value = System.getProperty(property);
+		return value == null ? defaultValue : Double.parseDouble(value);
+	}
+
+}
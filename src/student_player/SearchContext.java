@@ -0,0 +1,141 @@
+package student_player;
+
+/**
+ * State of one search thread: the deadline and transposition table, which are shared
+ * by all threads searching the same move, the move ordering tables and statistics,
+ * which are not, and the depths to search.
+ */
+public class SearchContext {
+
+	private final Deadline deadline;
+	private final TranspositionTable transpositionTable;
+	private final MoveOrdering moveOrdering = new MoveOrdering();
+	private long nodeCount;
+	private long nullMoveCutoffs;
+	private long reductions;
+	private long probCuts;
+
+	private int firstDepth = 1;
+	private int maxDepth = SearchConfig.MAX_DEPTH;
+	private boolean helper;
+	private volatile int completedDepth;
+	private volatile int completedScore;
+
+	public SearchContext(Deadline deadline, TranspositionTable transpositionTable) {
+		this.deadline = deadline;
+		this.transpositionTable = transpositionTable;
+	}
+
+	public Deadline getDeadline() {
+		return deadline;
+	}
+
+	public TranspositionTable getTranspositionTable() {
+		return transpositionTable;
+	}
+
+	public MoveOrdering getMoveOrdering() {
+		return moveOrdering;
+	}
+
+	/**
+	 * Counts a node visited by the search.
+	 */
+	public void countNode() {
+		nodeCount++;
+	}
+
+	public long getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Counts a node cut off by a null move search.
+	 */
+	public void countNullMoveCutoff() {
+		nullMoveCutoffs++;
+	}
+
+	public long getNullMoveCutoffs() {
+		return nullMoveCutoffs;
+	}
+
+	/**
+	 * Counts a move searched at reduced depth by late move reductions.
+	 */
+	public void countReduction() {
+		reductions++;
+	}
+
+	public long getReductions() {
+		return reductions;
+	}
+
+	/**
+	 * Counts a node cut off by ProbCut.
+	 */
+	public void countProbCut() {
+		probCuts++;
+	}
+
+	public long getProbCuts() {
+		return probCuts;
+	}
+
+	/**
+	 * @return the depth of the first iterative deepening iteration
+	 */
+	public int getFirstDepth() {
+		return firstDepth;
+	}
+
+	public void setFirstDepth(int firstDepth) {
+		this.firstDepth = firstDepth;
+	}
+
+	/**
+	 * @return the depth after which iterative deepening stops
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * @return true for a helper thread of a multi-threaded search, whose result is
+	 *         not used
+	 */
+	public boolean isHelper() {
+		return helper;
+	}
+
+	public void setHelper(boolean helper) {
+		this.helper = helper;
+	}
+
+	/**
+	 * @return the depth of the deepest completed iteration, 0 if there is none
+	 */
+	public int getCompletedDepth() {
+		return completedDepth;
+	}
+
+	public void setCompletedDepth(int completedDepth) {
+		this.completedDepth = completedDepth;
+	}
+
+	/**
+	 * @return the score of the deepest completed iteration
+	 */
+	public int getCompletedScore() {
+		return completedScore;
+	}
+
+	public void setCompletedScore(int completedScore) {
+		this.completedScore = completedScore;
+	}
+
+}
@@ -0,0 +1,135 @@
+package student_player;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import pentago_swap.PentagoMove;
+
+/**
+ * Game values of positions proven by ProofNumberSolver, keyed by
+ * PentagoBoardState.getHash(), which is the same in every run. Values are for the
+ * player to move; a WIN or NOT_LOSS comes with the move achieving it. The entries
+ * are kept sorted by hash for binary search, and new ones are merged in when the
+ * positions are next read or saved.
+ *
+ * The file holds the number of entries, then the hash and packed value of each.
+ */
+public class SolvedPositions {
+
+	/** the player to move wins with the stored move */
+	public static final int WIN = 1;
+	/** the player to move at least draws with the stored move */
+	public static final int NOT_LOSS = 2;
+	/** the player to move cannot win */
+	public static final int NOT_WIN = 3;
+	/** the player to move loses */
+	public static final int LOSS = 4;
+
+	private long[] hashes = new long[0];
+	// value << 8 | move code + 1, 0 for no move
+	private int[] data = new int[0];
+	// entries put since the last merge
+	private final Map<Long, Integer> added = new HashMap<>();
+
+	/**
+	 * Reads a file written by save.
+	 */
+	public static SolvedPositions load(Path path) throws IOException {
+		SolvedPositions positions = new SolvedPositions();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			int count = in.readInt();
+			positions.hashes = new long[count];
+			positions.data = new int[count];
+			for (int i = 0; i < count; i++) {
+				positions.hashes[i] = in.readLong();
+				positions.data[i] = in.readInt();
+			}
+		}
+		return positions;
+	}
+
+	public void save(Path path) throws IOException {
+		merge();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeInt(hashes.length);
+			for (int i = 0; i < hashes.length; i++) {
+				out.writeLong(hashes[i]);
+				out.writeInt(data[i]);
+			}
+		}
+	}
+
+	/**
+	 * Adds or replaces the value of a position.
+	 *
+	 * @param moveCode the move achieving the value, or TranspositionTable.NO_MOVE
+	 */
+	public void put(long hash, int value, int moveCode) {
+		added.put(hash, (value << 8) | (moveCode + 1));
+	}
+
+	/**
+	 * @return the value of the position, or 0 if it is not solved
+	 */
+	public int getValue(long hash) {
+		merge();
+		int index = Arrays.binarySearch(hashes, hash);
+		return index < 0 ? 0 : data[index] >>> 8;
+	}
+
+	/**
+	 * @return the move achieving the value of the position, or
+	 *         TranspositionTable.NO_MOVE
+	 */
+	public int getMoveCode(long hash) {
+		merge();
+		int index = Arrays.binarySearch(hashes, hash);
+		return index < 0 ? TranspositionTable.NO_MOVE : (data[index] & 0xFF) - 1;
+	}
+
+	/**
+	 * @return the stored move of a position the player to move wins, or null
+	 */
+	public PentagoMove getWinningMove(long hash, int playerID) {
+		if (getValue(hash) != WIN) {
+			return null;
+		}
+		return PentagoMove.fromCode(getMoveCode(hash), playerID);
+	}
+
+	public int size() {
+		merge();
+		return hashes.length;
+	}
+
+	private void merge() {
+		if (added.isEmpty()) {
+			return;
+		}
+		TreeMap<Long, Integer> entries = new TreeMap<>();
+		for (int i = 0; i < hashes.length; i++) {
+			entries.put(hashes[i], data[i]);
+		}
+		entries.putAll(added);
+		added.clear();
+
+		hashes = new long[entries.size()];
+		data = new int[entries.size()];
+		int i = 0;
+		for (Map.Entry<Long, Integer> entry : entries.entrySet()) {
+			hashes[i] = entry.getKey();
+			data[i] = entry.getValue();
+			i++;
+		}
+	}
+
+}
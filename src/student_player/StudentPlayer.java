@@ -1,5 +1,10 @@
 package student_player;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import boardgame.Board;
+import boardgame.BoardState;
 import boardgame.Move;
 
 import pentago_swap.PentagoPlayer;
@@ -8,6 +13,23 @@ import pentago_swap.PentagoBoardState;
 /** A player file submitted by a student. */
 public class StudentPlayer extends PentagoPlayer {
 
+    // pondering stops when the opponent's move arrives, long before this
+    private static final long PONDER_BUDGET_MILLIS = 3600 * 1000L;
+
+    // created on the first move, then kept for the whole game
+    private TranspositionTable transpositionTable;
+    private LazySmpSearch search;
+    private YoungBrothersWaitSearch ybwSearch;
+    private MonteCarloTreeSearch mcts;
+    private ParallelMonteCarloTreeSearch parallelMcts;
+    private ThreatSpaceSearch threatSearch;
+    private EndgameSolver endgameSolver;
+    private SolvedPositions solvedPositions;
+
+    // search on the opponent's time, between our move and theirs
+    private Thread ponderThread;
+    private Deadline ponderDeadline;
+
     /**
      * You must modify this constructor to return your student number. This is
      * important, because this is what the code that runs the competition uses to
@@ -23,11 +45,181 @@ public class StudentPlayer extends PentagoPlayer {
      * make decisions.
      */
     public Move chooseMove(PentagoBoardState boardState) {
+        stopPondering();
+        long budgetMillis = SearchConfig.getMoveBudgetMillis(boardState.getTurnNumber());
+        Deadline deadline = new Deadline(budgetMillis, SearchConfig.SOFT_TIME_FRACTION);
         int studentPlayerID = boardState.getTurnPlayer();
-        Node node = new Node(null, boardState, studentPlayerID);
-        Move myMove = node.getNextMove();
+
+        // a solved position or a forced win needs no full-width search
+        Move solvedMove = getSolvedMove(boardState);
+        if (solvedMove != null) {
+            return solvedMove;
+        }
+        if (boardState.getNumEmptyCells() <= SearchConfig.ENDGAME_EMPTY_CELLS) {
+            if (endgameSolver == null) {
+                endgameSolver = new EndgameSolver(SearchConfig.ENDGAME_TT_MEGABYTES);
+            }
+            Deadline endgameDeadline = new Deadline((long) (budgetMillis * SearchConfig.ENDGAME_TIME_FRACTION), 1);
+            // a lost position is left to the main search, which may find a move the
+            // opponent answers badly
+            if (endgameSolver.solve(boardState, endgameDeadline) && endgameSolver.getValue() != EndgameSolver.LOSS) {
+                return endgameSolver.getBestMove(studentPlayerID);
+            }
+        }
+        if (SearchConfig.THREAT_TIME_FRACTION > 0) {
+            if (threatSearch == null) {
+                threatSearch = new ThreatSpaceSearch(SearchConfig.THREAT_MAX_MOVES);
+            }
+            Deadline threatDeadline = new Deadline((long) (budgetMillis * SearchConfig.THREAT_TIME_FRACTION), 1);
+            Move winningMove = threatSearch.findForcedWin(boardState, threatDeadline);
+            if (winningMove != null) {
+                return winningMove;
+            }
+        }
+
+        Move myMove;
+        if (SearchConfig.ENGINE == SearchConfig.Engine.MCTS && SearchConfig.THREADS > 1) {
+            if (parallelMcts == null) {
+                parallelMcts = new ParallelMonteCarloTreeSearch(SearchConfig.MCTS_PARALLEL_MODE, SearchConfig.THREADS,
+                        SearchConfig.MCTS_NODES, SearchConfig.MCTS_EXPLORATION, SearchConfig.MCTS_GUIDED_PLAYOUTS,
+                        SearchConfig.MCTS_VIRTUAL_LOSS, SearchConfig.MCTS_REUSE_TREE);
+            }
+            myMove = parallelMcts.search(boardState, deadline);
+        } else if (SearchConfig.ENGINE == SearchConfig.Engine.MCTS) {
+            if (mcts == null) {
+                mcts = new MonteCarloTreeSearch(SearchConfig.MCTS_NODES, SearchConfig.MCTS_EXPLORATION,
+                        SearchConfig.MCTS_GUIDED_PLAYOUTS, SearchConfig.MCTS_SEED, SearchConfig.MCTS_REUSE_TREE);
+            }
+            myMove = mcts.search(boardState, deadline);
+        } else if (SearchConfig.ENGINE == SearchConfig.Engine.YBW) {
+            if (ybwSearch == null) {
+                ybwSearch = new YoungBrothersWaitSearch(SearchConfig.THREADS);
+            }
+            myMove = ybwSearch.search(boardState, studentPlayerID, deadline, SearchConfig.MAX_DEPTH);
+        } else {
+            if (transpositionTable == null) {
+                transpositionTable = new TranspositionTable(SearchConfig.TT_MEGABYTES);
+                search = new LazySmpSearch(SearchConfig.THREADS);
+            }
+            myMove = search.search(boardState, studentPlayerID, deadline, transpositionTable);
+        }
 
         // Return your move to be processed by the server.
         return myMove;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the move of a position ProofNumberSolver proved a win, or null
+     */
+    private Move getSolvedMove(PentagoBoardState boardState) {
+        if (SearchConfig.SOLVED_FILE.isEmpty()) {
+            return null;
+        }
+        if (solvedPositions == null) {
+            try {
+                solvedPositions = SolvedPositions.load(Paths.get(SearchConfig.SOLVED_FILE));
+            } catch (IOException e) {
+                System.err.println("Cannot load solved positions: " + e);
+                solvedPositions = new SolvedPositions();
+            }
+        }
+        return solvedPositions.getWinningMove(boardState.getHash(), boardState.getTurnPlayer());
+    }
+
+    /**
+     * Starts pondering when our own move comes back from the server, and stops it
+     * when the opponent's move arrives, so that the next chooseMove starts from the
+     * work done in between.
+     */
+    @Override
+    public void movePlayed(BoardState bs, Move move) {
+        PentagoBoardState boardState = (PentagoBoardState) bs;
+        if (boardState.getTurnPlayer() == player_id || boardState.getWinner() != Board.NOBODY) {
+            stopPondering();
+        } else if (SearchConfig.PONDER) {
+            // the client keeps playing moves on its board state
+            startPondering((PentagoBoardState) boardState.clone());
+        }
+    }
+
+    /**
+     * Searches on a background thread from the given position, where the opponent
+     * is to move. Monte Carlo tree search grows its tree from there. The alpha-beta
+     * search cannot search from the opponent's point of view without filling the
+     * transposition table with the opponent's scores, so it searches the position
+     * after the reply it expects instead, the best move stored for the opponent by
+     * the last search.
+     */
+    private void startPondering(PentagoBoardState boardState) {
+        Runnable task = null;
+        Deadline deadline = new Deadline(PONDER_BUDGET_MILLIS, 1);
+        if (parallelMcts != null && parallelMcts.canPonder()) {
+            task = () -> parallelMcts.ponder(boardState, deadline);
+        } else if (mcts != null && mcts.canPonder()) {
+            task = () -> mcts.ponder(boardState, deadline);
+        } else if (search != null) {
+            int reply = TranspositionTable.getMoveCode(transpositionTable.probe(boardState.getHash()));
+            if (reply != TranspositionTable.NO_MOVE) {
+                boardState.doMove(reply);
+                if (boardState.getWinner() == Board.NOBODY) {
+                    task = () -> search.search(boardState, player_id, deadline, transpositionTable);
+                }
+            }
+        }
+        if (task == null) {
+            return;
+        }
+
+        Runnable ponder = task;
+        ponderDeadline = deadline;
+        ponderThread = new Thread(() -> {
+            ponder.run();
+            if (SearchConfig.VERBOSE) {
+                System.out.println(String.format("Pondered for %d ms", deadline.getElapsedMillis()));
+            }
+        }, "ponder");
+        // the client exits when the game is over, whatever the ponder thread does
+        ponderThread.setDaemon(true);
+        ponderThread.start();
+    }
+
+    /**
+     * Cancels pondering and waits for the ponder thread, so that the searches are
+     * never used by two threads at once.
+     */
+    private void stopPondering() {
+        if (ponderThread == null) {
+            return;
+        }
+        ponderDeadline.cancel();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                ponderThread.join();
+                break;
+            } catch (InterruptedException e) {
+                // the search stops at its next node, wait for it anyway
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        ponderThread = null;
+        ponderDeadline = null;
+    }
+
+    @Override
+    public void gameOver(String msg, BoardState bs) {
+        stopPondering();
+        if (search != null) {
+            search.shutdown();
+        }
+        if (ybwSearch != null) {
+            ybwSearch.shutdown();
+        }
+        if (parallelMcts != null) {
+            parallelMcts.shutdown();
+        }
+    }
+}
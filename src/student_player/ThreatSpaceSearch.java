@@ -0,0 +1,144 @@
+package student_player;
+
+import boardgame.Board;
+import pentago_swap.PentagoBoardState;
+import pentago_swap.PentagoMove;
+
+/**
+ * Threat-space search: proves a forced win for the turn player (the attacker) by
+ * playing only threats. A threat is a move after which the attacker has a line of
+ * four and one empty cell, or five, on some swap board (the
+ * FOUR_AND_ONE_EMPTY_OR_FIVE condition of PentagoHeuristicBase, found with
+ * PentagoBoardState.getThreatCells); it can only be made from a line of three and
+ * two empty cells. The defender may answer with any move, but every move leaving
+ * the attacker an immediate win is refuted at once, so only the real defences are
+ * searched further. The attacker wins if some threat beats every defence.
+ *
+ * The search deepens one attacker move at a time until it proves a win, reaches
+ * its depth limit or runs out of time. Moves are played in place on one board
+ * state.
+ */
+public class ThreatSpaceSearch {
+
+	private final int maxAttackerMoves;
+	// move buffers, one per ply
+	private final int[][] moveBuffers;
+
+	// statistics of the last search
+	private long nodeCount;
+	private int provenDepth;
+
+	/**
+	 * @param maxAttackerMoves most attacker moves of a proof, the winning move
+	 *                         included
+	 */
+	public ThreatSpaceSearch(int maxAttackerMoves) {
+		this.maxAttackerMoves = maxAttackerMoves;
+		moveBuffers = new int[2 * maxAttackerMoves][PentagoMove.NUM_CODES];
+	}
+
+	/**
+	 * Looks for a forced win of the turn player until the deadline.
+	 *
+	 * @return the first move of a forced win, or null if none was found
+	 */
+	public PentagoMove findForcedWin(PentagoBoardState boardState, Deadline deadline) {
+		PentagoBoardState state = (PentagoBoardState) boardState.clone();
+		int attacker = state.getTurnPlayer();
+		nodeCount = 0;
+		provenDepth = 0;
+		int code = PentagoMove.ILLEGAL_CODE;
+		try {
+			for (int attackerMoves = 1; attackerMoves <= maxAttackerMoves; attackerMoves++) {
+				code = attack(state, attacker, attackerMoves, 0, deadline);
+				if (code != PentagoMove.ILLEGAL_CODE) {
+					provenDepth = attackerMoves;
+					break;
+				}
+			}
+		} catch (Deadline.ExpiredException e) {
+			code = PentagoMove.ILLEGAL_CODE;
+		}
+
+		if (SearchConfig.VERBOSE) {
+			System.out.println(String.format("Threat search: %s in %d ms, %d nodes",
+					code == PentagoMove.ILLEGAL_CODE ? "no forced win" : "win in " + provenDepth + " move(s)",
+					deadline.getElapsedMillis(), nodeCount));
+		}
+		return code == PentagoMove.ILLEGAL_CODE ? null : PentagoMove.fromCode(code, attacker);
+	}
+
+	/**
+	 * @return the number of nodes of the last search
+	 */
+	public long getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return the number of attacker moves of the win found by the last search, 0 if
+	 *         none was
+	 */
+	public int getProvenDepth() {
+		return provenDepth;
+	}
+
+	/**
+	 * The attacker is to move.
+	 *
+	 * @return a move winning in at most the given number of attacker moves, or
+	 *         PentagoMove.ILLEGAL_CODE
+	 */
+	private int attack(PentagoBoardState state, int attacker, int attackerMoves, int ply, Deadline deadline) {
+		deadline.check();
+		nodeCount++;
+		int win = state.getWinningMoveCode();
+		if (win != PentagoMove.ILLEGAL_CODE || attackerMoves <= 1) {
+			return win;
+		}
+
+		int[] moves = moveBuffers[ply];
+		int count = state.getDistinctLegalMovesInto(moves);
+		for (int i = 0; i < count; i++) {
+			long undoToken = state.doMove(moves[i]);
+			boolean wins = state.getWinner() == Board.NOBODY && state.getThreatCells(attacker) != 0
+					&& defend(state, attacker, attackerMoves - 1, ply + 1, deadline);
+			state.undoMove(undoToken);
+			if (wins) {
+				return moves[i];
+			}
+		}
+		return PentagoMove.ILLEGAL_CODE;
+	}
+
+	/**
+	 * The defender is to move, facing a threat.
+	 *
+	 * @return true if every defence loses in at most the given number of attacker
+	 *         moves
+	 */
+	private boolean defend(PentagoBoardState state, int attacker, int attackerMoves, int ply, Deadline deadline) {
+		nodeCount++;
+		if (state.getWinningMoveCode() != PentagoMove.ILLEGAL_CODE) {
+			return false;
+		}
+
+		int[] moves = moveBuffers[ply];
+		int count = state.getDistinctLegalMovesInto(moves);
+		for (int i = 0; i < count; i++) {
+			long undoToken = state.doMove(moves[i]);
+			boolean refuted;
+			if (state.getWinner() != Board.NOBODY) {
+				refuted = state.getWinner() == attacker;
+			} else {
+				refuted = attack(state, attacker, attackerMoves, ply + 1, deadline) != PentagoMove.ILLEGAL_CODE;
+			}
+			state.undoMove(undoToken);
+			if (!refuted) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
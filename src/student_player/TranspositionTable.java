@@ -0,0 +1,122 @@
+package student_player;
+
+/**
+ * Fixed-size transposition table keyed by PentagoBoardState.getHash(). It is
+ * preallocated from a memory budget and can be shared by several search threads
+ * without locks: every entry is stored as two longs, the packed data and the key
+ * XORed with the data, so an entry torn by concurrent writes fails verification
+ * and reads as a miss.
+ *
+ * Entries live in buckets of two. A new entry replaces the bucket's entry for the
+ * same position, or else the entry from an older search, or else the shallower
+ * one.
+ */
+public class TranspositionTable {
+
+	public static final int EXACT = 0;
+	public static final int LOWER_BOUND = 1;
+	public static final int UPPER_BOUND = 2;
+
+	// depth stored for terminal positions, whose score does not depend on depth
+	public static final int TERMINAL_DEPTH = 0xFF;
+
+	public static final int NO_MOVE = -1;
+
+	// data layout: bits 0-7 move code + 1 (0 for none), 8-15 depth, 16-17 bound,
+	// 18-25 generation, 31 valid, 32-63 score
+	private static final long VALID = 1L << 31;
+
+	private static final int BYTES_PER_ENTRY = 16;
+
+	private final long[] keys;
+	private final long[] data;
+	private final int mask;
+	private volatile int generation;
+
+	/**
+	 * @param megabytes memory budget; the number of entries is the largest power of
+	 *                  two fitting in it
+	 */
+	public TranspositionTable(int megabytes) {
+		long entries = Long.highestOneBit(Math.max(2, (long) megabytes * 1024 * 1024 / BYTES_PER_ENTRY));
+		keys = new long[(int) entries];
+		data = new long[(int) entries];
+		mask = (int) entries - 2; // index of the first entry of a bucket
+	}
+
+	/**
+	 * Marks the start of a new search, so entries of previous searches are replaced
+	 * first.
+	 */
+	public void newSearch() {
+		generation = (generation + 1) & 0xFF;
+	}
+
+	/**
+	 * @return the data of the entry for the given hash, or 0 if there is none
+	 */
+	public long probe(long hash) {
+		int index = (int) hash & mask;
+		for (int i = index; i < index + 2; i++) {
+			long entry = data[i];
+			if ((keys[i] ^ entry) == hash && (entry & VALID) != 0) {
+				return entry;
+			}
+		}
+		return 0;
+	}
+
+	public void store(long hash, int depth, int bound, int score, int moveCode) {
+		int index = (int) hash & mask;
+		int replace = index;
+		for (int i = index; i < index + 2; i++) {
+			long entry = data[i];
+			if ((keys[i] ^ entry) == hash || (entry & VALID) == 0) {
+				replace = i;
+				break;
+			}
+			if (replacementCost(entry) < replacementCost(data[replace])) {
+				replace = i;
+			}
+		}
+
+		long entry = (moveCode + 1) | ((long) depth << 8) | ((long) bound << 16) | ((long) generation << 18) | VALID
+				| ((long) score << 32);
+		data[replace] = entry;
+		keys[replace] = hash ^ entry;
+	}
+
+	// entries of older searches are cheapest to replace, then shallower ones
+	private int replacementCost(long entry) {
+		boolean current = getGeneration(entry) == generation;
+		return (current ? 0x100 : 0) + getDepth(entry);
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return data.length;
+	}
+
+	public static int getMoveCode(long entry) {
+		return (int) (entry & 0xFF) - 1;
+	}
+
+	public static int getDepth(long entry) {
+		return (int) (entry >>> 8) & 0xFF;
+	}
+
+	public static int getBound(long entry) {
+		return (int) (entry >>> 16) & 0x3;
+	}
+
+	private static int getGeneration(long entry) {
+		return (int) (entry >>> 18) & 0xFF;
+	}
+
+	public static int getScore(long entry) {
+		return (int) (entry >>> 32);
+	}
+
+}
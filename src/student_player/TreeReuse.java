@@ -0,0 +1,140 @@
+package student_player;
+
+import java.util.Arrays;
+
+import pentago_swap.PentagoBoardState;
+
+/**
+ * Tree reuse of the Monte Carlo tree searches, shared by MonteCarloTreeSearch and
+ * the shared tree of ParallelMonteCarloTreeSearch. Their nodes live in arrays
+ * indexed by node number, the root is node 0, and the children of a node are a
+ * block of consecutive numbers. The next search finds its position one or two
+ * plies below the last root, and the subtree of that node is compacted to the
+ * front of the arena.
+ */
+final class TreeReuse {
+
+	/**
+	 * The node arrays of a search, seen by the tree reuse.
+	 */
+	interface Arena {
+
+		/**
+		 * @return the number of the first child of the node, negative if it has none
+		 */
+		int getFirstChild(int node);
+
+		void setFirstChild(int node, int firstChild);
+
+		int getNumChildren(int node);
+
+		/**
+		 * @return the code of the move leading to the node
+		 */
+		int getMove(int node);
+
+		/**
+		 * Copies every field of count nodes to lower numbers; the ranges may
+		 * overlap.
+		 */
+		void copyNodes(int from, int to, int count);
+
+	}
+
+	static final int ROOT = 0;
+	static final int NOT_EXPANDED = -1;
+	static final int NOT_FOUND = -1;
+
+	private TreeReuse() {
+	}
+
+	/**
+	 * Looks for the given position one or two plies below the root of the last tree.
+	 *
+	 * @param rootState position of the root of the last tree, or null if there is
+	 *                  none
+	 * @return the number of the node of the position, or NOT_FOUND
+	 */
+	static int findSubtree(Arena arena, PentagoBoardState rootState, PentagoBoardState boardState) {
+		if (rootState == null || arena.getFirstChild(ROOT) < 0) {
+			return NOT_FOUND;
+		}
+		long hash = boardState.getHash();
+		PentagoBoardState state = (PentagoBoardState) rootState.clone();
+		int firstMove = arena.getFirstChild(ROOT);
+		for (int child = firstMove; child < firstMove + arena.getNumChildren(ROOT); child++) {
+			long undoToken = state.doMove(arena.getMove(child));
+			if (state.getHash() == hash) {
+				return child;
+			}
+			int firstReply = arena.getFirstChild(child);
+			for (int grandchild = firstReply; grandchild < firstReply + arena.getNumChildren(child); grandchild++) {
+				long replyToken = state.doMove(arena.getMove(grandchild));
+				boolean found = state.getHash() == hash;
+				state.undoMove(replyToken);
+				if (found) {
+					return grandchild;
+				}
+			}
+			state.undoMove(undoToken);
+		}
+		return NOT_FOUND;
+	}
+
+	/**
+	 * Moves the subtree of the given node to the front of the arena, the node
+	 * itself becoming the root. The blocks of children are moved in the order of
+	 * their numbers, so a block never moves up and never overwrites one still to be
+	 * moved. A node without children, or one whose first child is some other
+	 * negative mark, ends up NOT_EXPANDED. Runs while no search uses the arena.
+	 *
+	 * @return the number of nodes of the compacted tree
+	 */
+	static int compact(Arena arena, int newRoot) {
+		// the blocks of the subtree, as number << 16 | count
+		long[] blocks = new long[64];
+		int numBlocks = 0;
+		blocks[numBlocks++] = ((long) newRoot << 16) | 1;
+		for (int b = 0; b < numBlocks; b++) {
+			int first = (int) (blocks[b] >>> 16);
+			int last = first + (int) (blocks[b] & 0xFFFF);
+			for (int node = first; node < last; node++) {
+				if (arena.getFirstChild(node) >= 0) {
+					if (numBlocks == blocks.length) {
+						blocks = Arrays.copyOf(blocks, 2 * numBlocks);
+					}
+					blocks[numBlocks++] = ((long) arena.getFirstChild(node) << 16) | arena.getNumChildren(node);
+				}
+			}
+		}
+		Arrays.sort(blocks, 0, numBlocks);
+
+		int[] newFirst = new int[numBlocks];
+		int newSize = 0;
+		for (int b = 0; b < numBlocks; b++) {
+			newFirst[b] = newSize;
+			newSize += (int) (blocks[b] & 0xFFFF);
+		}
+
+		// renumber the children before any node moves
+		for (int b = 0; b < numBlocks; b++) {
+			int first = (int) (blocks[b] >>> 16);
+			int last = first + (int) (blocks[b] & 0xFFFF);
+			for (int node = first; node < last; node++) {
+				int oldFirst = arena.getFirstChild(node);
+				if (oldFirst >= 0) {
+					long block = ((long) oldFirst << 16) | arena.getNumChildren(node);
+					arena.setFirstChild(node, newFirst[Arrays.binarySearch(blocks, 0, numBlocks, block)]);
+				} else {
+					arena.setFirstChild(node, NOT_EXPANDED);
+				}
+			}
+		}
+
+		for (int b = 0; b < numBlocks; b++) {
+			arena.copyNodes((int) (blocks[b] >>> 16), newFirst[b], (int) (blocks[b] & 0xFFFF));
+		}
+		return newSize;
+	}
+
+}
@@ -0,0 +1,315 @@
+package student_player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+import pentago_swap.PentagoBoardState;
+import pentago_swap.PentagoMove;
+
+/**
+ * Parallel alpha-beta search by Young Brothers Wait: at every node, the first child
+ * is searched serially, then the remaining siblings are searched in parallel as
+ * fork-join tasks. The siblings share the bounds of their parent, which tighten as
+ * they finish; when they cross, the bounds are cancelled, and so are all searches
+ * below them.
+ *
+ * At a fixed depth the result does not depend on the number of threads or on their
+ * timing: the search has no transposition table, orders moves only by the static
+ * part of MoveOrdering, and breaks ties between equal scores by move order, so the
+ * root score and move are those of the serial search (one thread).
+ */
+public class YoungBrothersWaitSearch {
+
+	// nodes with less depth left are searched serially, their subtrees are too
+	// small to be worth a task
+	private static final int MIN_SPLIT_DEPTH = 2;
+
+	// never records a cutoff, so only wins, blocks and the first move are ordered
+	private static final MoveOrdering STATIC_ORDERING = new MoveOrdering();
+
+	private static final int MIN_BOUND = Node.LOSS_SCORE - 1;
+	private static final int MAX_BOUND = Node.WIN_SCORE + 1;
+
+	/**
+	 * Thrown inside the search of a node whose ancestor's bounds were cancelled.
+	 */
+	private static class CancelledException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		CancelledException() {
+			// no stack trace, this is control flow
+			super(null, null, false, false);
+		}
+
+	}
+
+	/**
+	 * Window and best child of a node, shared by the tasks searching its children.
+	 */
+	private static class SharedBounds {
+
+		private final SharedBounds parent;
+		private final boolean maximizing;
+		private final List<Node> children;
+
+		private int alpha;
+		private int beta;
+		private int bestScore;
+		private int bestIndex = -1;
+		private volatile boolean cancelled;
+
+		SharedBounds(SharedBounds parent, boolean maximizing, List<Node> children, int alpha, int beta) {
+			this.parent = parent;
+			this.maximizing = maximizing;
+			this.children = children;
+			this.alpha = alpha;
+			this.beta = beta;
+			bestScore = maximizing ? MIN_BOUND : MAX_BOUND;
+		}
+
+		/**
+		 * @return the window to search the child with the given index; a child
+		 *         before the best one gets a window one wider, so that it can prove
+		 *         a score equal to the best, which it wins by coming first
+		 */
+		synchronized int[] getWindow(int index) {
+			if (index < bestIndex) {
+				return maximizing ? new int[] { alpha - 1, beta } : new int[] { alpha, beta + 1 };
+			}
+			return new int[] { alpha, beta };
+		}
+
+		synchronized void update(int index, int score) {
+			boolean better = maximizing ? score > bestScore : score < bestScore;
+			if (better || (score == bestScore && index < bestIndex)) {
+				bestScore = score;
+				bestIndex = index;
+			}
+			if (maximizing && bestScore > alpha) {
+				alpha = bestScore;
+			} else if (!maximizing && bestScore < beta) {
+				beta = bestScore;
+			}
+			if (alpha >= beta) {
+				cancelled = true;
+			}
+		}
+
+		synchronized boolean isCutoff() {
+			return alpha >= beta;
+		}
+
+		synchronized int getBestScore() {
+			return bestScore;
+		}
+
+		synchronized Node getBestChild() {
+			return children.get(bestIndex);
+		}
+
+		/**
+		 * @return true if these bounds or those of an ancestor were cancelled
+		 */
+		boolean isCancelled() {
+			for (SharedBounds bounds = this; bounds != null; bounds = bounds.parent) {
+				if (bounds.cancelled) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+	}
+
+	private final ForkJoinPool pool;
+	private final LongAdder nodeCount = new LongAdder();
+	private Deadline deadline;
+	private int studentPlayerID;
+
+	// statistics of the last search
+	private int score;
+	private int completedDepth;
+
+	/**
+	 * @param numThreads number of threads of the fork-join pool; with one thread,
+	 *                   the search runs serially on the calling thread
+	 */
+	public YoungBrothersWaitSearch(int numThreads) {
+		pool = (numThreads > 1) ? new ForkJoinPool(numThreads) : null;
+	}
+
+	/**
+	 * Iterative deepening search until the deadline or the given depth, or a proven
+	 * win; a loss never stops it while time remains.
+	 *
+	 * @return the best move of the deepest completed iteration
+	 */
+	public PentagoMove search(PentagoBoardState boardState, int studentPlayerID, Deadline deadline, int maxDepth) {
+		this.deadline = deadline;
+		this.studentPlayerID = studentPlayerID;
+		nodeCount.reset();
+		score = 0;
+		completedDepth = 0;
+
+		Node root = new Node(boardState, studentPlayerID);
+		PentagoMove bestMove = null;
+		int lastDepth = Math.min(boardState.getNumEmptyCells(), maxDepth);
+		for (int depth = 1; depth <= lastDepth; depth++) {
+			SharedBounds bounds;
+			try {
+				int firstMove = (bestMove == null) ? TranspositionTable.NO_MOVE : bestMove.getCode();
+				bounds = searchRoot(root, depth, firstMove);
+			} catch (Deadline.ExpiredException e) {
+				break;
+			}
+			bestMove = bounds.getBestChild().getPreviousMove();
+			score = bounds.getBestScore();
+			completedDepth = depth;
+
+			if (score == Node.WIN_SCORE) {
+				// only ended games score WIN_SCORE, so the win is forced
+				break;
+			}
+			if (!deadline.canStartIteration()) {
+				break;
+			}
+		}
+		if (bestMove == null) {
+			bestMove = root.getChildren(STATIC_ORDERING, TranspositionTable.NO_MOVE).get(0).getPreviousMove();
+		}
+		if (SearchConfig.VERBOSE) {
+			System.out.println(String.format("YBW with %d thread(s): depth %d in %d ms, %d nodes",
+					(pool == null) ? 1 : pool.getParallelism(), completedDepth, deadline.getElapsedMillis(),
+					getNodeCount()));
+		}
+		return bestMove;
+	}
+
+	private SharedBounds searchRoot(Node root, int depthLimit, int firstMove) {
+		if (pool == null) {
+			return searchChildren(root, 0, depthLimit, MIN_BOUND, MAX_BOUND, null, firstMove);
+		}
+		// the tasks are forked from inside the pool
+		return pool.invoke(ForkJoinTask
+				.adapt(() -> searchChildren(root, 0, depthLimit, MIN_BOUND, MAX_BOUND, null, firstMove)));
+	}
+
+	private int search(Node node, int depth, int depthLimit, int alpha, int beta, SharedBounds parent) {
+		deadline.check();
+		if (parent != null && parent.isCancelled()) {
+			throw new CancelledException();
+		}
+		nodeCount.increment();
+		if (depth >= depthLimit || node.isTerminal()) {
+			return node.getSearchScore();
+		}
+		return searchChildren(node, depth, depthLimit, alpha, beta, parent, TranspositionTable.NO_MOVE)
+				.getBestScore();
+	}
+
+	private SharedBounds searchChildren(Node node, int depth, int depthLimit, int alpha, int beta,
+			SharedBounds parent, int firstMove) {
+		boolean maximizing = node.getBoardState().getTurnPlayer() == studentPlayerID;
+		List<Node> children = node.getChildren(STATIC_ORDERING, firstMove);
+		SharedBounds bounds = new SharedBounds(parent, maximizing, children, alpha, beta);
+
+		// the eldest brother
+		searchChild(bounds, 0, depth, depthLimit);
+		if (bounds.isCutoff() || children.size() == 1) {
+			return bounds;
+		}
+
+		if (pool == null || depthLimit - depth < MIN_SPLIT_DEPTH) {
+			for (int i = 1; i < children.size() && !bounds.isCutoff(); i++) {
+				searchChild(bounds, i, depth, depthLimit);
+			}
+			return bounds;
+		}
+
+		// the young brothers
+		List<ChildTask> tasks = new ArrayList<>(children.size() - 1);
+		for (int i = 1; i < children.size(); i++) {
+			tasks.add(new ChildTask(bounds, i, depth, depthLimit));
+		}
+		ForkJoinTask.invokeAll(tasks);
+		if (parent != null && parent.isCancelled()) {
+			throw new CancelledException();
+		}
+		return bounds;
+	}
+
+	private void searchChild(SharedBounds bounds, int index, int depth, int depthLimit) {
+		int[] window = bounds.getWindow(index);
+		int childScore = search(bounds.children.get(index), depth + 1, depthLimit, window[0], window[1], bounds);
+		bounds.update(index, childScore);
+	}
+
+	/**
+	 * The search of one young brother.
+	 */
+	private class ChildTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final SharedBounds bounds;
+		private final int index;
+		private final int depth;
+		private final int depthLimit;
+
+		ChildTask(SharedBounds bounds, int index, int depth, int depthLimit) {
+			this.bounds = bounds;
+			this.index = index;
+			this.depth = depth;
+			this.depthLimit = depthLimit;
+		}
+
+		@Override
+		protected void compute() {
+			if (bounds.isCancelled()) {
+				return;
+			}
+			try {
+				searchChild(bounds, index, depth, depthLimit);
+			} catch (CancelledException e) {
+				// the node owning the cancelled bounds returns or rethrows
+			}
+		}
+
+	}
+
+	/**
+	 * @return the number of nodes visited in the last search
+	 */
+	public long getNodeCount() {
+		return nodeCount.sum();
+	}
+
+	/**
+	 * @return the score of the best move of the last search
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * @return the depth of the deepest iteration completed in the last search
+	 */
+	public int getCompletedDepth() {
+		return completedDepth;
+	}
+
+	/**
+	 * Stops the threads of the pool once they are idle.
+	 */
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+}